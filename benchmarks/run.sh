@@ -0,0 +1,26 @@
+#!/bin/bash
+
+# Runs the JMH benchmarks of the client-side hot paths.
+#   bash run.sh                      run everything, results in results/jmh-<timestamp>.json
+#   bash run.sh --baseline           run everything and record baseline/jmh-baseline.json
+#   bash run.sh RowDigest -t 4       extra arguments are passed to JMH (benchmark regex, threads, -p params, ...)
+
+cd "$(dirname "$0")" || exit 1
+
+OUTPUT_DIR=results
+OUTPUT_FILE="jmh-$(date +%Y%m%d-%H%M%S).json"
+if [ "$1" == "--baseline" ]; then
+    OUTPUT_DIR=baseline
+    OUTPUT_FILE=jmh-baseline.json
+    shift
+fi
+mkdir -p "$OUTPUT_DIR"
+
+# The benchmarks depend on the installed main artifact
+if [ ! -f target/benchmarks.jar ]; then
+    (cd .. && mvn -q install -DskipTests) || exit 1
+    mvn -q package || exit 1
+fi
+
+java -jar target/benchmarks.jar -rf json -rff "$OUTPUT_DIR/$OUTPUT_FILE" "$@"
+echo "Results written to benchmarks/$OUTPUT_DIR/$OUTPUT_FILE"
@@ -0,0 +1,57 @@
+package bench;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import config.ConfigParser;
+import db.ConnectionPool;
+
+/**
+ * Connection checkout and return through the registry, including the acquisition-wait histogram, with more
+ * threads than pooled connections when the pool is small. Connections come from the in-memory driver, so the score
+ * is the pool's own overhead and contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class ConnectionPoolBenchmark {
+    private static final int DB_INDEX = 1;
+
+    @Param({ "4", "16" })
+    public int poolMaxSize;
+
+    @Setup
+    public void setUp() throws SQLException {
+        ConnectionPool.init(Collections.singletonMap(DB_INDEX,
+                new ConfigParser.DatabaseConfig(InMemoryJdbc.URL, "bench", "", poolMaxSize, poolMaxSize)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ConnectionPool.closeAll();
+    }
+
+    @Benchmark
+    public void checkout() throws SQLException {
+        Connection connection = ConnectionPool.getConnection(DB_INDEX);
+        ConnectionPool.releaseConnection(DB_INDEX, connection);
+    }
+}
@@ -0,0 +1,43 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import test.TestCase;
+
+/**
+ * Shared inputs of the benchmarks, built the same way ConfigParser builds test cases.
+ */
+public class Fixtures {
+    // A narrow table like test1 in the README and a wide one with every supported column type
+    public static final String NARROW_TABLE = "CREATE TABLE test_table_1 (id INT, name VARCHAR(100));";
+    public static final String WIDE_TABLE = "CREATE TABLE products (id INT, name VARCHAR(100), price DECIMAL(10, 2), "
+            + "stock INT, category_id BIGINT, weight FLOAT, ratio DOUBLE, active BOOLEAN, code CHAR(8), note TEXT, "
+            + "released DATE, created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP);";
+
+    public static String createTable(String shape) {
+        return shape.equals("wide") ? WIDE_TABLE : NARROW_TABLE;
+    }
+
+    public static TestCase testCase(String shape) {
+        TestCase testCase = new TestCase("bench_" + shape);
+        testCase.setCreateTableStatement(createTable(shape));
+        testCase.setMaxRandom(1000);
+        return testCase;
+    }
+
+    /** Rows as a driver returns them through getString, one text value per column. */
+    public static List<String[]> rows(int count, int columns, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<String[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] row = new String[columns];
+            row[0] = Integer.toString(i);
+            for (int c = 1; c < columns; c++) {
+                row[c] = Long.toString(random.nextLong(1_000_000_000L), 36);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
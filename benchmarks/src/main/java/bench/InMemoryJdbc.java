@@ -0,0 +1,156 @@
+package bench;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Minimal JDBC objects backed by memory, so the benchmarks measure the harness code and not a driver or a server.
+ * Connections answer every query with the same rows; methods the harness does not use return zero values.
+ */
+public class InMemoryJdbc {
+    public static final String URL = "jdbc:inmemory:bench";
+
+    private static volatile List<String[]> queryRows = Collections.emptyList();
+
+    static {
+        try {
+            DriverManager.registerDriver(new InMemoryDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Makes the driver's connections return these rows from every query. */
+    public static void setQueryRows(List<String[]> rows) {
+        queryRows = rows;
+    }
+
+    public static Connection connection(List<String[]> rows) {
+        return proxy(Connection.class, (method, args) -> {
+            switch (method.getName()) {
+                case "createStatement":
+                    return statement(rows);
+                case "isValid":
+                    return true;
+                case "isWrapperFor":
+                    return false;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static Statement statement(List<String[]> rows) {
+        return proxy(Statement.class, (method, args) -> {
+            if (method.getName().equals("executeQuery")) {
+                return resultSet(rows);
+            }
+            return null;
+        });
+    }
+
+    private static ResultSet resultSet(List<String[]> rows) {
+        int columns = rows.isEmpty() ? 0 : rows.get(0).length;
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (method, args) ->
+                method.getName().equals("getColumnCount") ? columns : null);
+        int[] cursor = { -1 };
+        return proxy(ResultSet.class, (method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                    return ++cursor[0] < rows.size();
+                case "getString":
+                    return rows.get(cursor[0])[(Integer) args[0] - 1];
+                case "getMetaData":
+                    return metaData;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private interface Handler {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    // Wraps the handler so that unhandled primitive methods return their zero value instead of failing on null
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(InMemoryJdbc.class.getClassLoader(), new Class<?>[] { type }, (p, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(p);
+                    case "equals":
+                        return p == args[0];
+                    default:
+                        return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(p));
+                }
+            }
+            Object result = handler.invoke(method, args);
+            if (result == null && method.getReturnType().isPrimitive()) {
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) {
+                    return false;
+                } else if (returnType == int.class) {
+                    return 0;
+                } else if (returnType == long.class) {
+                    return 0L;
+                } else if (returnType != void.class) {
+                    throw new UnsupportedOperationException(method.toString());
+                }
+            }
+            return result;
+        });
+    }
+
+    // Registered with DriverManager so Hikari pools can be created on URL
+    private static class InMemoryDriver implements Driver {
+        @Override
+        public Connection connect(String url, Properties info) {
+            return acceptsURL(url) ? connection(queryRows) : null;
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith("jdbc:inmemory:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import test.KeyStateModel;
+
+/**
+ * READ_COMMITTED expected-set computation: walking the visible keys of a partition (full scan) and of the keys
+ * touched by one transaction (incremental check), from the writer's and from an observer's point of view.
+ * Each thread owns its partition, as the RC clients do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Thread)
+public class KeyStateModelBenchmark {
+    @Param({ "1000", "1000000" })
+    public int partitionSize;
+
+    // Statements in the open transaction
+    @Param({ "10" })
+    public int touched;
+
+    KeyStateModel model;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+        model = new KeyStateModel(0, partitionSize);
+        // Half of the partition committed, then an open transaction with inserts and deletes
+        model.begin();
+        for (int i = 0; i < partitionSize / 2; i++) {
+            model.markInserted(model.takeAbsent(random));
+        }
+        model.commit();
+        model.begin();
+        for (int i = 0; i < touched; i++) {
+            if (i % 2 == 0) {
+                model.markInserted(model.takeAbsent(random));
+            } else {
+                model.markDeleted(model.takePresent(random));
+            }
+        }
+        model.sortTouched();
+    }
+
+    @Benchmark
+    public void fullScanOwnView(Blackhole blackhole) {
+        walk(blackhole, true, false);
+    }
+
+    @Benchmark
+    public void fullScanObserverView(Blackhole blackhole) {
+        walk(blackhole, false, false);
+    }
+
+    @Benchmark
+    public void touchedOwnView(Blackhole blackhole) {
+        walk(blackhole, true, true);
+    }
+
+    private void walk(Blackhole blackhole, boolean ownView, boolean touchedOnly) {
+        int id = model.getBase();
+        while ((id = touchedOnly ? model.nextVisibleTouched(id, ownView) : model.nextVisible(id, ownView)) >= 0) {
+            blackhole.consume(id);
+            id++;
+        }
+    }
+}
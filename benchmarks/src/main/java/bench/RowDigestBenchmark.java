@@ -0,0 +1,73 @@
+package bench;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import test.RowDigestVerifier;
+
+/**
+ * REPEATABLE_READ result comparison: digest capture of the first read and comparison of a later read, over rows
+ * served from memory so only the verifier's own cost is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class RowDigestBenchmark {
+    private static final String SQL = "SELECT * FROM bench;";
+
+    @State(Scope.Benchmark)
+    public static class Table {
+        @Param({ "10000", "1000000" })
+        public int rows;
+
+        @Param({ "2", "12" })
+        public int columns;
+
+        List<String[]> data;
+
+        @Setup
+        public void setUp() {
+            data = Fixtures.rows(rows, columns, 42);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        RowDigestVerifier verifier;
+        Connection connection;
+        RowDigestVerifier.Snapshot snapshot;
+
+        @Setup
+        public void setUp(Table table) throws SQLException {
+            verifier = new RowDigestVerifier(1000, 0, 20);
+            connection = InMemoryJdbc.connection(table.data);
+            snapshot = verifier.capture(connection, SQL);
+        }
+    }
+
+    @Benchmark
+    public RowDigestVerifier.Snapshot capture(Reader reader) throws SQLException {
+        return reader.verifier.capture(reader.connection, SQL);
+    }
+
+    @Benchmark
+    public RowDigestVerifier.Mismatch compare(Reader reader) throws SQLException {
+        return reader.verifier.compare(reader.connection, SQL, reader.snapshot);
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import test.SQLGenerator;
+import test.TestCase;
+
+/**
+ * Literal-SQL generation as the RR and RC clients do it: one generator per thread over a shared test case.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class SQLGeneratorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({ "narrow", "wide" })
+        public String shape;
+
+        TestCase testCase;
+
+        @Setup
+        public void setUp() {
+            testCase = Fixtures.testCase(shape);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        SQLGenerator generator;
+        SplittableRandom random;
+
+        @Setup
+        public void setUp(Shared shared) {
+            random = new SplittableRandom(Thread.currentThread().getId());
+            generator = new SQLGenerator(shared.testCase, random.split());
+        }
+    }
+
+    @Benchmark
+    public String insert(Client client) {
+        return client.generator.generateInsertStatement();
+    }
+
+    @Benchmark
+    public String update(Client client) {
+        return client.generator.generateUpdateStatement();
+    }
+
+    @Benchmark
+    public String delete(Client client) {
+        return client.generator.generateDeleteStatement();
+    }
+
+    @Benchmark
+    public String insertWithId(Client client) {
+        return client.generator.generateInsertStatementWithId(client.random.nextInt(1_000_000));
+    }
+
+    @Benchmark
+    public String updateWithId(Client client) {
+        return client.generator.generateUpdateStatementWithId(client.random.nextInt(1_000_000), client.random.nextInt(1_000_000));
+    }
+
+    @Benchmark
+    public String deleteWithId(Client client) {
+        return client.generator.generateDeleteStatementWithId(client.random.nextInt(1_000_000));
+    }
+}
@@ -0,0 +1,37 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import test.TestCase;
+
+/**
+ * Parsing of create_sql into column specs and the precompiled statement text (TestCase.parseColumns and friends).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class TestCaseBenchmark {
+    @Param({ "narrow", "wide" })
+    public String shape;
+
+    @Benchmark
+    public TestCase parseCreateTable() {
+        TestCase testCase = new TestCase("bench");
+        testCase.setCreateTableStatement(Fixtures.createTable(shape));
+        return testCase;
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ControlledFileWriter;
+import util.TraceSettings;
+
+/**
+ * SQL trace throughput: every thread owns a writer, as each client does, and all writers share the flusher thread.
+ * With the drop policy the score is the enqueue rate; compare with the writers' dropped counts printed at teardown
+ * to see whether the flusher keeps up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class TraceWriterBenchmark {
+    private static final String STATEMENT = "INSERT INTO test_table_1 VALUES (12345, 'AbCdEfGhIjKlMnOpQrSt');";
+
+    @State(Scope.Benchmark)
+    public static class Directory {
+        @Param({ "DROP", "BLOCK" })
+        public String overflow;
+
+        @Param({ "false", "true" })
+        public boolean compress;
+
+        Path path;
+        TraceSettings settings;
+        final AtomicInteger writers = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            path = Files.createTempDirectory("trace-bench");
+            settings = new TraceSettings(8192, TraceSettings.OverflowPolicy.valueOf(overflow), 0, 0, compress);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        ControlledFileWriter writer;
+
+        @Setup(Level.Trial)
+        public void setUp(Directory directory) throws IOException {
+            String fileName = directory.path.resolve("thread_" + directory.writers.incrementAndGet() + ".sql").toString();
+            writer = new ControlledFileWriter(fileName, true, directory.settings);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            writer.close();
+            if (writer.getDroppedCount() > 0) {
+                System.out.println("dropped " + writer.getDroppedCount() + " trace lines");
+            }
+        }
+    }
+
+    @Benchmark
+    public void writeStatement(Client client) throws IOException {
+        client.writer.writeStatement(STATEMENT);
+    }
+}
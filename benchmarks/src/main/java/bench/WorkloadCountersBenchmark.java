@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import metrics.WorkloadCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting one transaction and one query per call from every core: a single shared AtomicInteger pair, as the
+ * clients used to, against the striped per test case cells all clients of one role share.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class WorkloadCountersBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final AtomicInteger transactions = new AtomicInteger();
+        final AtomicInteger queries = new AtomicInteger();
+        final WorkloadCounters.Cell cell = WorkloadCounters.cellFor("bench", 1, WorkloadCounters.Role.WRITER);
+    }
+
+    @Benchmark
+    public void atomicInteger(Shared shared) {
+        shared.queries.incrementAndGet();
+        shared.transactions.incrementAndGet();
+    }
+
+    @Benchmark
+    public void stripedCell(Shared shared) {
+        shared.cell.query();
+        shared.cell.record(WorkloadCounters.Outcome.COMMIT);
+    }
+}
@@ -1,23 +1,42 @@
 import config.ConfigParser;
 import test.TestCase;
 import test.TestWorker;
+import db.ConnectionGate;
+import db.ConnectionPool;
 import db.DatabaseConnection;
+import db.ReplicationProbe;
+import metrics.JvmStats;
+import metrics.Json;
+import metrics.MetricsRegistry;
+import metrics.MetricsServer;
+import metrics.PrometheusWriter;
+import metrics.ResultsComparator;
+import metrics.RunResults;
+import metrics.WorkloadCounters;
+import util.ClientThreads;
+import util.Logger;
+import util.RunControl;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class App {
 
     private static ConfigParser configParser; // Configuration parser
-    private static AtomicInteger transactionCount = new AtomicInteger(0); // Transaction counter
-    private static AtomicInteger queryCount = new AtomicInteger(0); // Query counter
+    private static volatile long measureStartNanos; // Start of the measured window, 0 before it opens
+    private static volatile long measureEndNanos; // End of the measured window, 0 while it is open
 
     public static void main(String[] args) {
+        // "compare baseline.json candidate.json" diffs two results files instead of running a test
+        if (args.length > 0 && args[0].equals("compare")) {
+            System.exit(ResultsComparator.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         try {
 
             CrocodileArt();
@@ -25,32 +44,78 @@ public class App {
             // Initialize configuration parser
             configParser = new ConfigParser("config.ini");
 
+            // Structured results: JSON summary plus a CSV time series
+            if (!configParser.getResultsDir().isEmpty()) {
+                try {
+                    RunResults.open(configParser.getResultsDir(), configParser.getRawConfig());
+                    RunResults.beforeFinish(App::summarizeResults);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.out.println("Results files could not be created, continuing without them");
+                }
+            }
+
+            // Live metrics for long runs; scrapes only read the page the monitor thread last published
+            if (configParser.getMetricsPort() > 0) {
+                try {
+                    MetricsServer.start(configParser.getMetricsBind(), configParser.getMetricsPort());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.out.println("Metrics endpoint could not start, continuing without it");
+                }
+            }
+
+            // Virtual-thread clients park on a per-pool gate instead of blocking inside the pool
+            ClientThreads.configure(configParser.getClientThreads());
+            if (ClientThreads.isVirtual()) {
+                ConnectionGate.enable();
+                System.out.println("Simulated clients run on virtual threads");
+            }
+
+            // Get test cases from the configuration
+            Map<String, TestCase> testCases = configParser.getTestCases();
+
+            // Warn when the pools cannot serve every client at once, and refuse to start a virtual-thread run whose
+            // pools cannot hold the reserved connections. This sets the gates' reservations, so it runs before the
+            // first connection is requested
+            if (!validatePoolCapacity(testCases)) {
+                System.exit(1);
+            }
+
             // Test database connection
             if (testDatabaseConnection()) {
                 System.out.println("Database connection is successful");
 
-                // Get test cases from the configuration
-                Map<String, TestCase> testCases = configParser.getTestCases();
-                
-                // Create a fixed-size thread pool
-                ExecutorService executorService = Executors.newFixedThreadPool(4);
+                // Measure replica lag in the background so stale replica reads can be told apart from failures
+                try {
+                    ReplicationProbe.start(configParser);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    System.out.println("Replication lag probe could not start, continuing without it");
+                }
+
+                // Nothing is recorded until the measured window opens
+                MetricsRegistry.setMeasuring(false);
+                RunControl.expectLoads(testCases.size());
+
+                // Create a thread pool that sets up every test case at once
+                ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, testCases.size()));
 
                 // Submit test tasks to the thread pool
                 for (TestCase testCase : testCases.values()) {
-                    TestWorker worker = new TestWorker(testCase, configParser, transactionCount, queryCount);
+                    TestWorker worker = new TestWorker(testCase, configParser);
                     executorService.submit(worker);
                 }
 
+                publishMetrics();
                 // Start a separate thread to periodically print TPS and QPS
                 startMonitoringThread(executorService);
 
                 // Shut down the thread pool and wait for tasks to complete
                 executorService.shutdown();
-                // Sleep for the specified test duration
                 try {
-                    TimeUnit.SECONDS.sleep(configParser.getTestDuration());
-                    // Print completion message
-                    System.out.println("Testing completed");
+                    runPhases();
+                    shutdown();
                     System.exit(0);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt(); // Preserve the interrupt status
@@ -69,11 +134,140 @@ public class App {
     }
 
     /**
-     * Tests whether the database connection is successful.
+     * Runs the load, warmup, measure and cooldown phases, then signals the clients to stop.
+     * Only the measure phase (test_duration) is recorded.
+     */
+    private static void runPhases() throws InterruptedException {
+        RunControl.awaitLoaded();
+        if (configParser.getWarmupSeconds() > 0) {
+            RunControl.setPhase(RunControl.Phase.WARMUP);
+            TimeUnit.SECONDS.sleep(configParser.getWarmupSeconds());
+        }
+
+        RunControl.setPhase(RunControl.Phase.MEASURE);
+        WorkloadCounters.Snapshot countsAtStart = WorkloadCounters.snapshot();
+        measureStartNanos = System.nanoTime();
+        MetricsRegistry.setMeasuring(true);
+        // Sleep for the specified test duration
+        TimeUnit.SECONDS.sleep(configParser.getTestDuration());
+        MetricsRegistry.setMeasuring(false);
+        measureEndNanos = System.nanoTime();
+        double seconds = measuredSeconds();
+        WorkloadCounters.Snapshot counts = WorkloadCounters.snapshot().minus(countsAtStart);
+        long transactions = counts.getTransactions();
+        long queries = counts.getQueries();
+
+        if (configParser.getCooldownSeconds() > 0) {
+            RunControl.setPhase(RunControl.Phase.COOLDOWN);
+            TimeUnit.SECONDS.sleep(configParser.getCooldownSeconds());
+        }
+
+        // Print completion message
+        System.out.println("Testing completed");
+        System.out.println(String.format("Measured window: %.1f s, %d transactions (%.1f TPS), %d queries (%.1f QPS)",
+                seconds, transactions, transactions / seconds, queries, queries / seconds));
+        counts.print(seconds);
+        Map<String, Object> measured = new LinkedHashMap<>();
+        measured.put("seconds", seconds);
+        measured.put("transactions", transactions);
+        measured.put("tps", transactions / seconds);
+        measured.put("queries", queries);
+        measured.put("qps", queries / seconds);
+        measured.put("workload", counts.summarize(seconds));
+        RunResults.put("measured", measured);
+        RunControl.setPhase(RunControl.Phase.STOPPING);
+    }
+
+    /**
+     * Waits for the clients to finish their current transaction, prints the summaries, then closes the
+     * replication probe and the pools and flushes the logs.
+     */
+    private static void shutdown() throws InterruptedException {
+        int stuck = RunControl.awaitClients(TimeUnit.SECONDS.toMillis(configParser.getShutdownTimeoutSeconds()));
+        if (stuck > 0) {
+            // Closing the pools rolls back whatever these clients still have open
+            System.out.println(stuck + " client(s) did not stop within shutdown_timeout_seconds");
+        }
+        MetricsRegistry.printRunSummary();
+        ConnectionPool.printRunSummary();
+        ReplicationProbe.printRunSummary();
+        // Written before the pools close, since their summaries come from the live pools
+        RunResults.finish();
+        publishMetrics();
+        ReplicationProbe.stop();
+        ConnectionPool.closeAll();
+        if (Logger.getDroppedCount() > 0) {
+            System.out.println("Log messages dropped: " + Logger.getDroppedCount());
+        }
+        Logger.flush();
+    }
+
+    // Length of the measured window so far; runs stopped early still get a summary
+    private static double measuredSeconds() {
+        if (measureStartNanos == 0) {
+            return 0;
+        }
+        long end = measureEndNanos != 0 ? measureEndNanos : System.nanoTime();
+        return (end - measureStartNanos) / 1e9;
+    }
+
+    // Adds the per test case and per database summaries to the results file
+    private static void summarizeResults() {
+        RunResults.put("test_cases", MetricsRegistry.summarize(measuredSeconds()));
+        RunResults.put("key_distributions", MetricsRegistry.summarizeByDistribution(measuredSeconds()));
+        Map<String, Object> databases = ConnectionPool.summarize();
+        ReplicationProbe.summarize(databases);
+        RunResults.put("databases", databases);
+    }
+
+    /**
+     * Renders the live metrics pages from the registries and hands them to the metrics endpoint. Runs on the
+     * monitoring thread, so scrapes never read the histograms themselves.
+     */
+    private static void publishMetrics() {
+        if (!MetricsServer.isRunning()) {
+            return;
+        }
+        String phase = RunControl.getPhase().name().toLowerCase();
+        PrometheusWriter prometheus = new PrometheusWriter();
+        prometheus.gauge("cumberbench_phase", "Current run phase", 1, "phase", phase);
+        prometheus.gauge("cumberbench_measured_seconds", "Length of the measured window so far", measuredSeconds());
+        WorkloadCounters.Snapshot counts = WorkloadCounters.snapshot();
+        counts.export(prometheus);
+        MetricsRegistry.export(prometheus);
+        ConnectionPool.export(prometheus);
+        ReplicationProbe.export(prometheus);
+        JvmStats.export(prometheus);
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("phase", phase);
+        json.put("measured_seconds", measuredSeconds());
+        json.put("transactions", counts.getTransactions());
+        json.put("queries", counts.getQueries());
+        json.put("workload", counts.summarize(0));
+        json.put("test_cases", MetricsRegistry.summarize(measuredSeconds()));
+        Map<String, Object> databases = ConnectionPool.summarize();
+        ConnectionPool.addPoolState(databases);
+        ReplicationProbe.summarize(databases);
+        json.put("databases", databases);
+        json.put("jvm", JvmStats.summarize());
+        MetricsServer.publish(prometheus.toString(), Json.write(json));
+    }
+
+    /**
+     * Creates the connection pools and tests whether the database connection is successful.
      * @return true if the database connection is successful.
      */
     private static boolean testDatabaseConnection() {
-        try (DatabaseConnection dbConnection = new DatabaseConnection(configParser,1)) {
+        // Create every pool up front so clients only ever look them up
+        try {
+            ConnectionPool.init(configParser.getDatabaseConfigs());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+        // Outside the gate, like every connection that is not a client's
+        try (DatabaseConnection dbConnection = new DatabaseConnection(configParser, 1, false)) {
             Connection connection = dbConnection.getConnection();
             return connection != null && !connection.isClosed();
         } catch (SQLException e) {
@@ -83,11 +277,67 @@ public class App {
     }
 
     /**
-     * Starts a monitoring thread that periodically prints TPS (Transactions Per Second) and QPS (Queries Per Second).
+     * Checks every database pool against the peak number of connections all test cases may use at once.
+     * Platform-thread clients above pool_max_size only get a warning: they queue in the pool, and the interval
+     * reports flag the wait. Virtual-thread clients check connections out per transaction and may outnumber the
+     * pool, but the pool must hold the observer and lag probe connections reserved outside the connection gate
+     * and one client, or the run could deadlock; that is the only case that fails.
+     * Must run before the first connection is requested, since the gates are sized on first use.
+     * @param testCases The configured test cases
+     * @return false if a virtual-thread run cannot start with these pools.
+     */
+    private static boolean validatePoolCapacity(Map<String, TestCase> testCases) {
+        int databaseCount = configParser.getDatabaseIndex();
+        int[] demand = new int[databaseCount + 1];
+        int[] observers = new int[databaseCount + 1];
+        for (TestCase testCase : testCases.values()) {
+            int[] caseDemand = TestWorker.estimateConnectionDemand(testCase, databaseCount);
+            int[] caseObservers = TestWorker.estimateObserverDemand(testCase, databaseCount);
+            for (int i = 1; i <= databaseCount; i++) {
+                demand[i] += caseDemand[i];
+                observers[i] += caseObservers[i];
+            }
+        }
+        // The lag probe holds one connection per database: the heartbeat writer on database1, a poller per replica
+        int probe = ReplicationProbe.isConfigured(configParser) ? 1 : 0;
+        boolean ok = true;
+        for (int i = 1; i <= databaseCount; i++) {
+            demand[i] += probe;
+            int poolMaxSize = configParser.getDatabaseConfigs().get(i).getPoolMaxSize();
+            System.out.println("database" + i + ": peak client connections " + demand[i] + ", pool_max_size " + poolMaxSize);
+            if (demand[i] <= poolMaxSize) {
+                continue;
+            }
+            if (ClientThreads.isVirtual()) {
+                int required = observers[i] + probe + 1;
+                if (required > poolMaxSize) {
+                    System.out.println("Error: pool_max_size of database" + i + " is too small for the observer sessions and lag probe; set it to at least " + required);
+                    ok = false;
+                } else {
+                    // Observers and the probe keep their share; clients take turns on the rest, one transaction at a time
+                    ConnectionGate.reserve(i, observers[i] + probe);
+                    System.out.println("database" + i + ": client sessions check out " + (poolMaxSize - observers[i] - probe)
+                            + " connections per transaction through the connection gate, " + (observers[i] + probe)
+                            + " reserved for observers and the lag probe");
+                }
+            } else {
+                System.out.println("Warning: pool_max_size of database" + i + " is below the peak client connections; clients will queue"
+                        + " for connections and the measured numbers include that wait. Set it to at least " + demand[i] + " to avoid it");
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Starts a monitoring thread that periodically prints TPS (Transactions Per Second) and QPS (Queries Per Second),
+     * followed by the per-operation latency percentiles and the connection pool state of the interval, and
+     * publishes the live metrics pages.
      * @param executorService The thread pool
      */
     private static void startMonitoringThread(ExecutorService executorService) {
-        new Thread(() -> {
+        Thread monitor = new Thread(() -> {
+            // The counters keep running totals so the measured window can be taken from them too
+            WorkloadCounters.Snapshot last = WorkloadCounters.snapshot();
             while (true) {
                 try {
                     TimeUnit.SECONDS.sleep(5); // Print every 5 seconds
@@ -97,11 +347,28 @@ public class App {
                 }
 
                 // Print TPS and QPS
-                int tps = transactionCount.getAndSet(0) / 5;
-                int qps = queryCount.getAndSet(0) / 5;
-                System.out.println("Monitoring in progress *************** TPS: " + tps + " *************** QPS: " + qps);
+                WorkloadCounters.Snapshot current = WorkloadCounters.snapshot();
+                WorkloadCounters.Snapshot interval = current.minus(last);
+                last = current;
+                long tps = interval.getTransactions() / 5;
+                long qps = interval.getQueries() / 5;
+                String phase = RunControl.getPhase().name().toLowerCase();
+                System.out.println("Monitoring in progress (" + phase
+                        + ") *************** TPS: " + tps + " *************** QPS: " + qps);
+                RunResults.startInterval(phase);
+                RunResults.addIntervalValue("run", "all", "tps", tps);
+                RunResults.addIntervalValue("run", "all", "qps", qps);
+                interval.addIntervalValues(5);
+                MetricsRegistry.printIntervalReport(5);
+                ConnectionPool.printIntervalReport();
+                ReplicationProbe.printIntervalReport();
+                RunResults.flushInterval();
+                publishMetrics();
             }
-        }).start();
+        }, "monitor");
+        // Never keeps the process alive after shutdown
+        monitor.setDaemon(true);
+        monitor.start();
     }
 
 
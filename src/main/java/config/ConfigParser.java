@@ -1,12 +1,19 @@
 package config;
 
+import test.ArrivalSchedule;
+import test.DataLoader;
+import test.ExecMode;
 import test.TestCase;
+import test.TransactionShape;
+import util.RandomSource;
+import util.TraceSettings;
 
 import org.ini4j.Ini;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class ConfigParser {
@@ -14,11 +21,23 @@ public class ConfigParser {
     private String username; // Database username
     private String password; // Database password
     private int testDuration; // Test duration in seconds
+    private int warmupSeconds; // Unmeasured traffic before the measured window
+    private int cooldownSeconds; // Unmeasured traffic after the measured window
+    private int shutdownTimeoutSeconds; // How long clients get to finish their transaction when stopping
     private int max_random; // Maximum random number for test cases
+    private long seed; // Run seed every worker's random stream is derived from
+    private String clientThreads; // "platform" or "virtual" threads for simulated clients
     private boolean enableLogging;
+    private TraceSettings traceSettings; // Buffering, rotation and compression of the SQL trace files
     private Map<String, TestCase> testCases; // Map of test cases
     private Map<Integer, DatabaseConfig> databaseConfigs; // Map of database configurations
     private int databaseIndex;
+    private long lagProbeIntervalMs; // Heartbeat interval of the replication lag probe, 0 disables it
+    private long lagProbePollMs; // How often the probe reads each replica's heartbeat
+    private String resultsDir; // Directory for the JSON and CSV results, empty to disable them
+    private int metricsPort; // Port of the embedded metrics endpoint, 0 disables it
+    private String metricsBind; // Address the metrics endpoint listens on
+    private Map<String, Map<String, String>> rawConfig; // Every section as read, passwords masked
 
     /**
      * Constructor that parses the configuration file.
@@ -35,6 +54,16 @@ public class ConfigParser {
         // Load the INI file
         Ini ini = new Ini(file);
 
+        // Keep the configuration as read for the results file, without credentials
+        rawConfig = new LinkedHashMap<>();
+        for (String sectionName : ini.keySet()) {
+            Map<String, String> section = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : ini.get(sectionName).entrySet()) {
+                section.put(entry.getKey(), entry.getKey().equalsIgnoreCase("password") ? "***" : entry.getValue());
+            }
+            rawConfig.put(sectionName, section);
+        }
+
         // Log that the configuration file is loaded
        // System.out.println("Configuration file loaded: " + path + "/" + filePath);
 
@@ -53,14 +82,56 @@ public class ConfigParser {
         // username = ini.get("main", "username"); // Read the database username
         // password = ini.get("main", "password"); // Read the database password
         enableLogging = Boolean.parseBoolean(ini.get("main", "logging_sql"));
+        // Read SQL trace settings; by default events are dropped rather than blocking workers when a buffer is full
+        String traceBufferStr = ini.get("main", "trace_buffer_size");
+        String traceOverflowStr = ini.get("main", "trace_overflow");
+        String traceRotateMbStr = ini.get("main", "trace_rotate_mb");
+        String traceRotateSecondsStr = ini.get("main", "trace_rotate_seconds");
+        traceSettings = new TraceSettings(
+                (traceBufferStr != null) ? Integer.parseInt(traceBufferStr.trim()) : 8192,
+                (traceOverflowStr != null) ? TraceSettings.OverflowPolicy.valueOf(traceOverflowStr.trim().toUpperCase())
+                        : TraceSettings.OverflowPolicy.DROP,
+                (traceRotateMbStr != null) ? Long.parseLong(traceRotateMbStr.trim()) * 1024 * 1024 : 0,
+                (traceRotateSecondsStr != null) ? Long.parseLong(traceRotateSecondsStr.trim()) * 1000 : 0,
+                Boolean.parseBoolean(ini.get("main", "trace_compress")));
+        // Read the client thread kind; virtual threads need the java21 build
+        clientThreads = ini.get("main", "client_threads");
         // Read test duration, with a default value of 60 seconds
         String testDurationStr = ini.get("main", "test_duration");
         testDuration = (testDurationStr != null) ? Integer.parseInt(testDurationStr) : 60;
+        // Read the unmeasured warmup and cooldown around the measured test_duration, and the stop timeout
+        String warmupStr = ini.get("main", "warmup_seconds");
+        warmupSeconds = (warmupStr != null) ? Integer.parseInt(warmupStr.trim()) : 0;
+        String cooldownStr = ini.get("main", "cooldown_seconds");
+        cooldownSeconds = (cooldownStr != null) ? Integer.parseInt(cooldownStr.trim()) : 0;
+        String shutdownTimeoutStr = ini.get("main", "shutdown_timeout_seconds");
+        shutdownTimeoutSeconds = (shutdownTimeoutStr != null) ? Integer.parseInt(shutdownTimeoutStr.trim()) : 30;
 
         // Read max random value, with a default value of 100
         String maxRandomStr = ini.get("main", "max_random");
         max_random = (maxRandomStr != null) ? Integer.parseInt(maxRandomStr) : 100;
 
+        // Read the run seed; without one a fresh seed is picked and printed so the run can be replayed
+        String seedStr = ini.get("main", "seed");
+        seed = (seedStr != null) ? Long.parseLong(seedStr.trim()) : RandomSource.newRunSeed();
+        System.out.println("Run seed: " + seed);
+
+        // Read the results directory; results go to ./results unless disabled with an empty value
+        String resultsDirStr = ini.get("main", "results_dir");
+        resultsDir = (resultsDirStr != null) ? resultsDirStr.trim() : "results";
+
+        // Read the embedded metrics endpoint settings; it only runs when a port is set
+        String metricsPortStr = ini.get("main", "metrics_port");
+        metricsPort = (metricsPortStr != null) ? Integer.parseInt(metricsPortStr.trim()) : 0;
+        String metricsBindStr = ini.get("main", "metrics_bind");
+        metricsBind = (metricsBindStr != null) ? metricsBindStr.trim() : "127.0.0.1";
+
+        // Read the replication lag probe settings; it only runs when replicas are configured
+        String lagProbeIntervalStr = ini.get("main", "lag_probe_interval_ms");
+        lagProbeIntervalMs = (lagProbeIntervalStr != null) ? Long.parseLong(lagProbeIntervalStr.trim()) : 1000;
+        String lagProbePollStr = ini.get("main", "lag_probe_poll_ms");
+        lagProbePollMs = (lagProbePollStr != null) ? Long.parseLong(lagProbePollStr.trim()) : 10;
+
         // Parse the database configurations
         databaseConfigs = new HashMap<>();
         int dbIndex = 1;
@@ -69,7 +140,9 @@ public class ConfigParser {
             String jdbcUrl = ini.get(sectionName, "jdbcurl");
             String username = ini.get(sectionName, "username");
             String password = ini.get(sectionName, "password");
-            databaseConfigs.put(dbIndex, new DatabaseConfig(jdbcUrl, username, password));
+            int poolMinIdle = getInt(ini, sectionName, "pool_min_idle", 20);
+            int poolMaxSize = getInt(ini, sectionName, "pool_max_size", 30);
+            databaseConfigs.put(dbIndex, new DatabaseConfig(jdbcUrl, username, password, poolMinIdle, poolMaxSize));
             dbIndex++;
         }
         databaseIndex = dbIndex - 1;
@@ -89,12 +162,68 @@ public class ConfigParser {
                 testCases.get(testName).setIndexColumn(ini.get(testName, "index_col"));
                 testCases.get(testName).setIsolationLevel(ini.get(testName, "iso"));
                 testCases.get(testName).setMaxRandom(max_random);
+                testCases.get(testName).setExecMode(ExecMode.parse(ini.get(testName, "exec_mode")));
+                testCases.get(testName).setReaderThreads(getInt(ini, testName, "reader_threads", 1));
+                testCases.get(testName).setMixedThreads(getInt(ini, testName, "mixed_threads", 1));
+                testCases.get(testName).setWriterThreads(getInt(ini, testName, "writer_threads", 2));
+                testCases.get(testName).setArrivalMode(ArrivalSchedule.Mode.parse(ini.get(testName, "arrival")));
+                String targetTpsStr = ini.get(testName, "target_tps");
+                testCases.get(testName).setTargetTps((targetTpsStr != null) ? Double.parseDouble(targetTpsStr.trim()) : 0);
+                testCases.get(testName).setRateSteps(ini.get(testName, "rate_steps"));
+                validateArrival(testCases.get(testName));
+                String loadRowsStr = ini.get(testName, "load_rows");
+                testCases.get(testName).setLoadRows((loadRowsStr != null) ? Long.parseLong(loadRowsStr.trim()) : -1);
+                testCases.get(testName).setLoadMethod(DataLoader.Method.parse(ini.get(testName, "load_method")));
+                testCases.get(testName).setLoadThreads(getInt(ini, testName, "load_threads", 4));
+                testCases.get(testName).setLoadBatchSize(getInt(ini, testName, "load_batch_size", 1000));
+                testCases.get(testName).setVerifyFetchSize(getInt(ini, testName, "verify_fetch_size", 1000));
+                testCases.get(testName).setVerifyMaxRows(getInt(ini, testName, "verify_max_rows", 0));
+                testCases.get(testName).setVerifyDiffRows(getInt(ini, testName, "verify_diff_rows", 20));
+                testCases.get(testName).setObserverFanout(getInt(ini, testName, "observer_fanout", 2));
+                testCases.get(testName).setObserverSessions(getInt(ini, testName, "observer_sessions", 0));
+                testCases.get(testName).setRcFullScanInterval(getInt(ini, testName, "rc_full_scan_interval", 1));
+                testCases.get(testName).setRetryMaxAttempts(getInt(ini, testName, "retry_max_attempts", 5));
+                testCases.get(testName).setRetryBaseBackoffMs(getInt(ini, testName, "retry_base_backoff_ms", 2));
+                testCases.get(testName).setRetryMaxBackoffMs(getInt(ini, testName, "retry_max_backoff_ms", 200));
+                testCases.get(testName).setOpWeights(ini.get(testName, "op_weights"));
+                testCases.get(testName).setTxnLength(ini.get(testName, "txn_length"));
+                String commitRatioStr = ini.get(testName, "commit_ratio");
+                testCases.get(testName).setCommitRatio((commitRatioStr != null) ? Double.parseDouble(commitRatioStr.trim()) : 0.7);
+                testCases.get(testName).setKeyDistribution(ini.get(testName, "key_distribution"));
+                validateShape(testCases.get(testName));
             }
         }
 
 
     }
 
+    // Rejects open-loop settings that would leave the workers without a rate
+    private static void validateArrival(TestCase testCase) {
+        ArrivalSchedule.Mode mode = testCase.getArrivalMode();
+        if ((mode == ArrivalSchedule.Mode.CONSTANT || mode == ArrivalSchedule.Mode.POISSON) && testCase.getTargetTps() <= 0) {
+            throw new IllegalArgumentException(testCase.getTestCaseName() + ": arrival=" + mode + " requires target_tps > 0");
+        }
+        if (mode == ArrivalSchedule.Mode.STEPPED && testCase.getRateStepTps().length == 0) {
+            throw new IllegalArgumentException(testCase.getTestCaseName() + ": arrival=STEPPED requires rate_steps");
+        }
+    }
+
+    // Rejects operation weights, transaction lengths, commit ratios or key distributions the workers could not draw from
+    private static void validateShape(TestCase testCase) {
+        try {
+            TransactionShape.forTestCase(testCase);
+            testCase.getKeyChooser();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(testCase.getTestCaseName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Reads an integer option, falling back to the default when it is missing
+    private static int getInt(Ini ini, String section, String key, int defaultValue) {
+        String value = ini.get(section, key);
+        return (value != null) ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
     // Getters for JDBC configuration
     public String getJdbcUrl() {
         return jdbcUrl;
@@ -111,13 +240,50 @@ public class ConfigParser {
     public int getTestDuration() {
         return testDuration;
     }
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+    public int getCooldownSeconds() {
+        return cooldownSeconds;
+    }
+    public int getShutdownTimeoutSeconds() {
+        return shutdownTimeoutSeconds;
+    }
     public int getMaxrandom() {
         return max_random;
     }
+    public String getClientThreads() {
+        return clientThreads;
+    }
+    public long getSeed() {
+        return seed;
+    }
+    public String getResultsDir() {
+        return resultsDir;
+    }
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+    public String getMetricsBind() {
+        return metricsBind;
+    }
+    public Map<String, Map<String, String>> getRawConfig() {
+        return rawConfig;
+    }
+    public long getLagProbeIntervalMs() {
+        return lagProbeIntervalMs;
+    }
+    public long getLagProbePollMs() {
+        return lagProbePollMs;
+    }
     public boolean getEnableLogging() {
         return enableLogging;
     }
 
+    public TraceSettings getTraceSettings() {
+        return traceSettings;
+    }
+
     public Map<String, TestCase> getTestCases() {
         return testCases;
     }
@@ -133,11 +299,15 @@ public class ConfigParser {
         private String jdbcUrl;
         private String username;
         private String password;
+        private int poolMinIdle; // Idle connections Hikari keeps open
+        private int poolMaxSize; // Upper bound on open connections
 
-        public DatabaseConfig(String jdbcUrl, String username, String password) {
+        public DatabaseConfig(String jdbcUrl, String username, String password, int poolMinIdle, int poolMaxSize) {
             this.jdbcUrl = jdbcUrl;
             this.username = username;
             this.password = password;
+            this.poolMinIdle = poolMinIdle;
+            this.poolMaxSize = poolMaxSize;
         }
 
         public String getJdbcUrl() {
@@ -151,5 +321,13 @@ public class ConfigParser {
         public String getPassword() {
             return password;
         }
+
+        public int getPoolMinIdle() {
+            return poolMinIdle;
+        }
+
+        public int getPoolMaxSize() {
+            return poolMaxSize;
+        }
     }
 }
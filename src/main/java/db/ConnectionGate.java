@@ -0,0 +1,80 @@
+package db;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Admission gate in front of each connection pool, used with virtual-thread clients.
+ * Clients park on a fair java.util.concurrent Semaphore sized to the pool, which unmounts a virtual
+ * thread instead of pinning its carrier, so by the time a client enters the pool a connection is free
+ * and the pool never blocks inside a monitor. Clients check a connection out per transaction, which lets
+ * thousands of mostly-idle sessions share a pool. Connections reserved for the RC observers are left
+ * out of the gate, since clients wait for observer checks while holding their own connection, and so are
+ * the lag probe's, which it holds for the whole run.
+ */
+public class ConnectionGate {
+    private static volatile boolean enabled;
+    private static final ConcurrentMap<Integer, Semaphore> permits = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Integer, Integer> reserved = new ConcurrentHashMap<>();
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Keeps connections of a database's pool out of the gate, for sessions that bypass it. Call it before
+     * the first connection to that database is requested.
+     *
+     * @param dbIndex     The database index.
+     * @param connections Connections to keep out of the gate.
+     * @throws IllegalStateException If the gate of the database was already sized without the reservation.
+     */
+    public static void reserve(int dbIndex, int connections) {
+        if (permits.containsKey(dbIndex)) {
+            throw new IllegalStateException("Connection gate of database index " + dbIndex
+                    + " is already in use; reserve connections before the first one is requested");
+        }
+        reserved.put(dbIndex, connections);
+    }
+
+    /**
+     * Waits for a free slot in the pool of a database.
+     *
+     * @param dbIndex     The database index.
+     * @param poolMaxSize The pool's maximum size, used when the gate is first created.
+     */
+    static void acquire(int dbIndex, int poolMaxSize) throws SQLException {
+        if (!enabled) {
+            return;
+        }
+        try {
+            permits.computeIfAbsent(dbIndex,
+                    index -> new Semaphore(Math.max(1, poolMaxSize - reserved.getOrDefault(index, 0)), true)).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to database index: " + dbIndex, e);
+        }
+    }
+
+    // Clients currently parked on the gate of a database
+    static int getWaiting(int dbIndex) {
+        Semaphore semaphore = permits.get(dbIndex);
+        return semaphore != null ? semaphore.getQueueLength() : 0;
+    }
+
+    static void release(int dbIndex) {
+        if (!enabled) {
+            return;
+        }
+        Semaphore semaphore = permits.get(dbIndex);
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+}
@@ -2,13 +2,68 @@ package db;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import config.ConfigParser;
+import metrics.HistogramSnapshot;
+import metrics.LatencyHistogram;
+import metrics.PrometheusWriter;
+import metrics.RunResults;
 
+/**
+ * Registry of the Hikari pools, one per database. Pools are created eagerly by init() and looked up
+ * without locking, so checkouts from different clients never serialize on the registry. Each pool
+ * records how long clients wait to acquire a connection (including the connection gate) and how
+ * often acquisition times out.
+ */
 public class ConnectionPool {
-    private static Map<Integer, HikariDataSource> dataSourceMap = new HashMap<>();
+    private static final ConcurrentMap<Integer, Pool> pools = new ConcurrentHashMap<>();
+    // Indexes into the array returned by state()
+    private static final int ACTIVE = 0, IDLE = 1, PENDING = 2;
+
+    // A data source and its acquisition metrics
+    private static class Pool {
+        final HikariDataSource dataSource;
+        final int maxSize;
+        final LatencyHistogram acquireWait = new LatencyHistogram();
+        final AtomicLong timeouts = new AtomicLong();
+        HistogramSnapshot lastWait = HistogramSnapshot.empty(); // Monitor thread only
+        long lastTimeouts; // Monitor thread only
+
+        Pool(HikariDataSource dataSource, int maxSize) {
+            this.dataSource = dataSource;
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Creates the pools of every configured database.
+     *
+     * @param databaseConfigs Database configurations keyed by database index.
+     */
+    public static void init(Map<Integer, ConfigParser.DatabaseConfig> databaseConfigs) throws SQLException {
+        for (Map.Entry<Integer, ConfigParser.DatabaseConfig> entry : databaseConfigs.entrySet()) {
+            ConfigParser.DatabaseConfig dbConfig = entry.getValue();
+            if (!isDataSourceAdded(entry.getKey())) {
+                addDataSource(
+                    entry.getKey(),
+                    dbConfig.getJdbcUrl(),
+                    dbConfig.getUsername(),
+                    dbConfig.getPassword(),
+                    dbConfig.getPoolMinIdle(), // initial pool size
+                    dbConfig.getPoolMaxSize()  // max pool size
+                );
+            }
+        }
+    }
 
     public static void addDataSource(int dbIndex, String url, String user, String password, int initialSize, int maxSize) throws SQLException {
         HikariConfig hikariConfig = new HikariConfig();
@@ -17,22 +72,54 @@ public class ConnectionPool {
         hikariConfig.setPassword(password);
         hikariConfig.setMaximumPoolSize(maxSize);
         hikariConfig.setMinimumIdle(initialSize);
+        hikariConfig.setPoolName("database" + dbIndex);
         hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
         hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
         hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-        HikariDataSource dataSource = new HikariDataSource(hikariConfig);
-        dataSourceMap.put(dbIndex, dataSource);
+        // Let the drivers collapse JDBC batches (exec_mode = batched, batch loads) into fewer, larger requests
+        if (url != null && url.startsWith("jdbc:mysql:")) {
+            hikariConfig.addDataSourceProperty("rewriteBatchedStatements", "true");
+        } else if (url != null && url.startsWith("jdbc:postgresql:")) {
+            hikariConfig.addDataSourceProperty("reWriteBatchedInserts", "true");
+        }
+        HikariDataSource dataSource;
+        try {
+            dataSource = new HikariDataSource(hikariConfig);
+        } catch (RuntimeException e) {
+            // Hikari reports a failed first connection as an unchecked PoolInitializationException
+            throw new SQLException("Failed to initialize the pool of database index: " + dbIndex, e);
+        }
+        if (pools.putIfAbsent(dbIndex, new Pool(dataSource, maxSize)) != null) {
+            dataSource.close();
+        }
+    }
+
+    public static Connection getConnection(int dbIndex) throws SQLException {
+        return getConnection(dbIndex, System.nanoTime());
     }
 
-    public static synchronized Connection getConnection(int dbIndex) throws SQLException {
-        HikariDataSource dataSource = dataSourceMap.get(dbIndex);
-        if (dataSource == null) {
+    /**
+     * Checks out a connection.
+     *
+     * @param dbIndex     The database index.
+     * @param requestedAt When the client asked for the connection (System.nanoTime), before any gate wait.
+     */
+    public static Connection getConnection(int dbIndex, long requestedAt) throws SQLException {
+        Pool pool = pools.get(dbIndex);
+        if (pool == null) {
             throw new SQLException("No data source found for database index: " + dbIndex);
         }
-        return dataSource.getConnection();
+        try {
+            Connection connection = pool.dataSource.getConnection();
+            pool.acquireWait.recordNanos(System.nanoTime() - requestedAt);
+            return connection;
+        } catch (SQLTransientConnectionException e) {
+            pool.timeouts.incrementAndGet();
+            throw e;
+        }
     }
 
-    public static synchronized void releaseConnection(int dbIndex, Connection connection) {
+    public static void releaseConnection(int dbIndex, Connection connection) {
         if (connection != null) {
             try {
                 connection.close();
@@ -42,7 +129,133 @@ public class ConnectionPool {
         }
     }
 
-    public static synchronized boolean isDataSourceAdded(int dbIndex) {
-        return dataSourceMap.containsKey(dbIndex);
+    public static boolean isDataSourceAdded(int dbIndex) {
+        return pools.containsKey(dbIndex);
+    }
+
+    /**
+     * Closes every pool; called once all clients have stopped.
+     */
+    public static void closeAll() {
+        for (Integer dbIndex : new TreeMap<>(pools).keySet()) {
+            Pool pool = pools.remove(dbIndex);
+            if (pool != null) {
+                pool.dataSource.close();
+            }
+        }
+    }
+
+    /**
+     * Prints each pool's state and the acquisition waits since the previous interval report. A pool with
+     * waiting clients or timeouts means the harness, not the database, limits throughput.
+     */
+    public static synchronized void printIntervalReport() {
+        for (Map.Entry<Integer, Pool> entry : new TreeMap<>(pools).entrySet()) {
+            Pool pool = entry.getValue();
+            HistogramSnapshot current = pool.acquireWait.snapshot();
+            HistogramSnapshot interval = current.minus(pool.lastWait);
+            pool.lastWait = current;
+            long timeouts = pool.timeouts.get();
+            long intervalTimeouts = timeouts - pool.lastTimeouts;
+            pool.lastTimeouts = timeouts;
+
+            int[] state = state(entry.getKey(), pool);
+            int active = state[ACTIVE];
+            int idle = state[IDLE];
+            int pending = state[PENDING];
+            StringBuilder line = new StringBuilder();
+            line.append("  pool database").append(entry.getKey())
+                    .append(": active=").append(active).append(" idle=").append(idle)
+                    .append(" pending=").append(pending).append(" max=").append(pool.maxSize)
+                    .append(" timeouts=").append(intervalTimeouts)
+                    .append(" acquire ").append(interval.formatPercentiles());
+            if (pending > 0 || intervalTimeouts > 0) {
+                line.append(" <- clients queue for connections, the harness is the bottleneck");
+            }
+            System.out.println(line);
+            String name = "database" + entry.getKey();
+            RunResults.addIntervalValue("database", name, "pool_active", active);
+            RunResults.addIntervalValue("database", name, "pool_idle", idle);
+            RunResults.addIntervalValue("database", name, "pool_pending", pending);
+            RunResults.addIntervalValue("database", name, "pool_timeouts", intervalTimeouts);
+            RunResults.addIntervalValue("database", name, "acquire_p99_ms", interval.getValueAtPercentile(99) / 1000.0);
+        }
+    }
+
+    /**
+     * Acquisition waits and timeouts of every pool for the whole run, keyed by database name.
+     */
+    public static synchronized Map<String, Object> summarize() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Pool> entry : new TreeMap<>(pools).entrySet()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("pool_max_size", entry.getValue().maxSize);
+            stats.put("pool_timeouts", entry.getValue().timeouts.get());
+            stats.put("acquire", entry.getValue().acquireWait.snapshot().toSummary());
+            summary.put("database" + entry.getKey(), stats);
+        }
+        return summary;
+    }
+
+    /**
+     * Adds the current state of every pool to the per-database summaries, for the live metrics page.
+     *
+     * @param databases Per-database summaries keyed by database name, as returned by summarize().
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized void addPoolState(Map<String, Object> databases) {
+        for (Map.Entry<Integer, Pool> entry : new TreeMap<>(pools).entrySet()) {
+            Object existing = databases.get("database" + entry.getKey());
+            Map<String, Object> stats = existing instanceof Map ? (Map<String, Object>) existing : new LinkedHashMap<>();
+            int[] state = state(entry.getKey(), entry.getValue());
+            stats.put("pool_active", state[ACTIVE]);
+            stats.put("pool_idle", state[IDLE]);
+            stats.put("pool_pending", state[PENDING]);
+            databases.put("database" + entry.getKey(), stats);
+        }
+    }
+
+    /**
+     * Adds every pool's gauges, timeouts and acquisition waits for the whole run to a Prometheus page.
+     *
+     * @param prometheus The page being built.
+     */
+    public static synchronized void export(PrometheusWriter prometheus) {
+        for (Map.Entry<Integer, Pool> entry : new TreeMap<>(pools).entrySet()) {
+            Pool pool = entry.getValue();
+            String name = "database" + entry.getKey();
+            int[] state = state(entry.getKey(), pool);
+            prometheus.gauge("cumberbench_pool_connections", "Pooled connections by state", state[ACTIVE],
+                    "database", name, "state", "active");
+            prometheus.gauge("cumberbench_pool_connections", "Pooled connections by state", state[IDLE],
+                    "database", name, "state", "idle");
+            prometheus.gauge("cumberbench_pool_pending", "Clients waiting for a connection", state[PENDING], "database", name);
+            prometheus.gauge("cumberbench_pool_max_size", "Configured pool_max_size", pool.maxSize, "database", name);
+            prometheus.counter("cumberbench_pool_timeouts_total", "Connection acquisitions that timed out",
+                    pool.timeouts.get(), "database", name);
+            prometheus.histogram("cumberbench_pool_acquire_seconds", "Time to acquire a connection, including the gate",
+                    pool.acquireWait.snapshot(), "database", name);
+        }
+    }
+
+    // Active, idle and waiting clients of a pool; waiting includes clients parked on the connection gate
+    private static int[] state(int dbIndex, Pool pool) {
+        HikariPoolMXBean bean = pool.dataSource.getHikariPoolMXBean();
+        int[] state = new int[3];
+        state[ACTIVE] = bean != null ? bean.getActiveConnections() : 0;
+        state[IDLE] = bean != null ? bean.getIdleConnections() : 0;
+        state[PENDING] = (bean != null ? bean.getThreadsAwaitingConnection() : 0) + ConnectionGate.getWaiting(dbIndex);
+        return state;
+    }
+
+    /**
+     * Prints the acquisition waits and timeouts of every pool for the whole run.
+     */
+    public static synchronized void printRunSummary() {
+        for (Map.Entry<Integer, Pool> entry : new TreeMap<>(pools).entrySet()) {
+            Pool pool = entry.getValue();
+            System.out.println("  pool database" + entry.getKey() + ": timeouts=" + pool.timeouts.get()
+                    + " acquire " + pool.acquireWait.snapshot().formatPercentiles());
+        }
     }
-}
\ No newline at end of file
+}
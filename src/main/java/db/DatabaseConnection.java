@@ -9,27 +9,39 @@ import java.util.Map;
 public class DatabaseConnection implements AutoCloseable {
     private int dbIndex;
     private Connection connection;
+    private final boolean gated;
 
     public DatabaseConnection(ConfigParser configParser, int dbIndex) throws SQLException {
+        this(configParser, dbIndex, true);
+    }
+
+    /**
+     * Checks out a connection of a database's pool.
+     *
+     * @param gated false for sessions that use the connections reserved outside the connection gate.
+     */
+    public DatabaseConnection(ConfigParser configParser, int dbIndex, boolean gated) throws SQLException {
         this.dbIndex = dbIndex;
+        this.gated = gated;
         Map<Integer, ConfigParser.DatabaseConfig> databaseConfigs = configParser.getDatabaseConfigs();
         ConfigParser.DatabaseConfig dbConfig = databaseConfigs.get(dbIndex);
         if (dbConfig == null) {
             throw new SQLException("No configuration found for database index: " + dbIndex);
         }
-        synchronized (ConnectionPool.class) {
-            if (!ConnectionPool.isDataSourceAdded(dbIndex)) {
-                ConnectionPool.addDataSource(
-                    dbIndex,
-                    dbConfig.getJdbcUrl(),
-                    dbConfig.getUsername(),
-                    dbConfig.getPassword(),
-                    20, // initial pool size
-                    30  // max pool size
-                );
+        // The pools are created by ConnectionPool.init() at startup; the acquisition wait includes the gate
+        long requestedAt = System.nanoTime();
+        // With virtual-thread clients, park on the gate first so the pool never blocks a carrier
+        if (gated) {
+            ConnectionGate.acquire(dbIndex, dbConfig.getPoolMaxSize());
+        }
+        try {
+            this.connection = ConnectionPool.getConnection(dbIndex, requestedAt);
+        } catch (SQLException e) {
+            if (gated) {
+                ConnectionGate.release(dbIndex);
             }
+            throw e;
         }
-        this.connection = ConnectionPool.getConnection(dbIndex);
     }
 
     public Connection getConnection() {
@@ -40,6 +52,10 @@ public class DatabaseConnection implements AutoCloseable {
     public void close() {
         if (connection != null) {
             ConnectionPool.releaseConnection(dbIndex, connection);
+            connection = null;
+            if (gated) {
+                ConnectionGate.release(dbIndex);
+            }
         }
     }
 
@@ -0,0 +1,320 @@
+package db;
+
+import config.ConfigParser;
+import metrics.HistogramSnapshot;
+import metrics.LatencyHistogram;
+import metrics.PrometheusWriter;
+import metrics.RunResults;
+import util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background replication-lag probe. A writer commits a numbered heartbeat row on database1 at a fixed
+ * interval and one poller per replica measures how long each heartbeat takes to become visible there.
+ * Clients use the heartbeat as a fence: right after a commit they request one, which makes the writer
+ * commit the next heartbeat at once. A replica that has not shown that heartbeat may not have applied the
+ * commit yet; the client then accepts a read that matches an earlier committed state as replication lag.
+ * The probe's connections bypass the connection gate; App reserves them in each pool.
+ */
+public class ReplicationProbe {
+    private static final String TABLE = "cumberbench_heartbeat";
+    private static final int RING = 1024; // Commit times kept for heartbeats not yet seen everywhere
+
+    private static volatile boolean enabled;
+    private static final AtomicLong lastCommitted = new AtomicLong(-1);
+    private static final AtomicLong lastStarted = new AtomicLong(-1); // Heartbeat whose write began last
+    private static final Object requests = new Object(); // The writer waits on it between heartbeats
+    private static boolean requested; // Guarded by requests
+    private static final long[] commitNanos = new long[RING];
+    private static final List<Replica> replicas = new ArrayList<>();
+    private static final List<Thread> threads = new ArrayList<>();
+
+    // Lag metrics of one replica
+    private static class Replica {
+        final int dbIndex;
+        final LatencyHistogram lag = new LatencyHistogram();
+        final AtomicLong staleReads = new AtomicLong();
+        volatile long lastSeen = -1;
+        HistogramSnapshot lastLag = HistogramSnapshot.empty(); // Monitor thread only
+        long lastStaleReads; // Monitor thread only
+
+        Replica(int dbIndex) {
+            this.dbIndex = dbIndex;
+        }
+    }
+
+    /**
+     * Whether the probe runs with this configuration: there are replicas and lag_probe_interval_ms is positive.
+     */
+    public static boolean isConfigured(ConfigParser configParser) {
+        return configParser.getDatabaseIndex() > 1 && configParser.getLagProbeIntervalMs() > 0;
+    }
+
+    /**
+     * Creates the heartbeat table on database1 and starts the writer and one poller per replica.
+     */
+    public static synchronized void start(ConfigParser configParser) throws SQLException {
+        if (enabled || !isConfigured(configParser)) {
+            return;
+        }
+        long seq;
+        try (DatabaseConnection dbConnection = new DatabaseConnection(configParser, 1, false);
+             Statement statement = dbConnection.getConnection().createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE
+                    + " (id INT PRIMARY KEY, seq BIGINT NOT NULL, written_at BIGINT NOT NULL)");
+            seq = readSeq(dbConnection.getConnection());
+            if (seq < 0) {
+                statement.execute("INSERT INTO " + TABLE + " VALUES (1, 0, 0)");
+                seq = 0;
+            }
+        }
+        // Continue after the heartbeats of earlier runs, which replicas may still hold
+        lastCommitted.set(seq);
+        lastStarted.set(seq);
+        for (int db = 2; db <= configParser.getDatabaseIndex(); db++) {
+            Replica replica = new Replica(db);
+            replica.lastSeen = seq;
+            replicas.add(replica);
+            threads.add(daemon("lag-probe-db" + db, () -> poll(configParser, replica)));
+        }
+        threads.add(daemon("lag-probe-writer", () -> write(configParser)));
+        enabled = true;
+        System.out.println("Replication lag probe started for " + replicas.size() + " replica(s)");
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Requests a heartbeat right after a client commit and returns it as the fence: the first heartbeat
+     * whose write starts after this call, so a replica showing it contains everything committed before.
+     * A write already in flight may have started before the commit, hence the one after it.
+     *
+     * @return The fence, or -1 when the probe is off.
+     */
+    public static long requestFence() {
+        if (!enabled) {
+            return -1;
+        }
+        long fence = lastStarted.get() + 1;
+        synchronized (requests) {
+            requested = true;
+            requests.notify();
+        }
+        return fence;
+    }
+
+    /**
+     * Checks on a replica connection whether the replica has reached the fence. Call it before the read it
+     * qualifies; replicas apply commits in order, so a caught-up replica contains the fenced commits. On a
+     * connection inside a transaction the heartbeat is read under a savepoint, so a failed read does not
+     * abort the caller's transaction.
+     *
+     * @return true if the replica is behind the fence; false if it caught up or the heartbeat cannot be read.
+     */
+    public static boolean isBehind(Connection replica, long fence) {
+        try {
+            if (replica.getAutoCommit()) {
+                return readSeq(replica) < fence;
+            }
+            Savepoint savepoint = replica.setSavepoint();
+            try {
+                long seq = readSeq(replica);
+                replica.releaseSavepoint(savepoint);
+                return seq < fence;
+            } catch (SQLException e) {
+                replica.rollback(savepoint);
+                return false;
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Counts a replica read that returned stale rows because of replication lag. */
+    public static void recordStaleRead(int dbIndex) {
+        for (Replica replica : replicas) {
+            if (replica.dbIndex == dbIndex) {
+                replica.staleReads.incrementAndGet();
+            }
+        }
+    }
+
+    /** Stops the writer and pollers. */
+    public static synchronized void stop() {
+        enabled = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Prints each replica's commit-to-visible latency and stale reads since the previous interval report.
+     */
+    public static synchronized void printIntervalReport() {
+        for (Replica replica : replicas) {
+            HistogramSnapshot current = replica.lag.snapshot();
+            HistogramSnapshot interval = current.minus(replica.lastLag);
+            replica.lastLag = current;
+            long staleReads = replica.staleReads.get();
+            long behind = Math.max(0, lastCommitted.get() - replica.lastSeen);
+            System.out.println("  replica database" + replica.dbIndex + ": behind=" + behind
+                    + " heartbeats, stale reads=" + (staleReads - replica.lastStaleReads) + " lag " + interval.formatPercentiles());
+            String name = "database" + replica.dbIndex;
+            RunResults.addIntervalValue("database", name, "replica_behind", behind);
+            RunResults.addIntervalValue("database", name, "stale_reads", staleReads - replica.lastStaleReads);
+            RunResults.addIntervalValue("database", name, "lag_p99_ms", interval.getValueAtPercentile(99) / 1000.0);
+            replica.lastStaleReads = staleReads;
+        }
+    }
+
+    /**
+     * Adds each replica's lag and stale reads for the whole run to the per-database summaries.
+     *
+     * @param databases Summaries keyed by database name, as built by ConnectionPool.summarize().
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized void summarize(Map<String, Object> databases) {
+        for (Replica replica : replicas) {
+            Object existing = databases.get("database" + replica.dbIndex);
+            Map<String, Object> stats = existing instanceof Map ? (Map<String, Object>) existing : new LinkedHashMap<>();
+            stats.put("stale_reads", replica.staleReads.get());
+            stats.put("replication_lag", replica.lag.snapshot().toSummary());
+            databases.put("database" + replica.dbIndex, stats);
+        }
+    }
+
+    /**
+     * Adds each replica's commit-to-visible latency and stale reads for the whole run to a Prometheus page.
+     *
+     * @param prometheus The page being built.
+     */
+    public static synchronized void export(PrometheusWriter prometheus) {
+        for (Replica replica : replicas) {
+            String name = "database" + replica.dbIndex;
+            prometheus.histogram("cumberbench_replication_lag_seconds", "Time until a heartbeat is visible on the replica",
+                    replica.lag.snapshot(), "database", name);
+            prometheus.counter("cumberbench_stale_reads_total", "Replica reads that trailed a commit within the lag",
+                    replica.staleReads.get(), "database", name);
+        }
+    }
+
+    /**
+     * Prints each replica's commit-to-visible latency and stale reads for the whole run.
+     */
+    public static synchronized void printRunSummary() {
+        for (Replica replica : replicas) {
+            System.out.println("  replica database" + replica.dbIndex + ": stale reads=" + replica.staleReads.get()
+                    + " lag " + replica.lag.snapshot().formatPercentiles());
+        }
+    }
+
+    // Commits one heartbeat per interval on database1, or as soon as a client requests one
+    private static void write(ConfigParser configParser) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (DatabaseConnection dbConnection = new DatabaseConnection(configParser, 1, false);
+                 PreparedStatement update = dbConnection.getConnection().prepareStatement(
+                         "UPDATE " + TABLE + " SET seq = ?, written_at = ? WHERE id = 1")) {
+                dbConnection.getConnection().setAutoCommit(true);
+                while (true) {
+                    long seq = lastCommitted.get() + 1;
+                    synchronized (requests) {
+                        requested = false; // This write starts after every request made so far
+                    }
+                    lastStarted.set(seq);
+                    update.setLong(1, seq);
+                    update.setLong(2, System.currentTimeMillis());
+                    update.executeUpdate();
+                    commitNanos[(int) (seq % RING)] = System.nanoTime();
+                    lastCommitted.set(seq);
+                    awaitRequest(configParser.getLagProbeIntervalMs());
+                }
+            } catch (SQLException e) {
+                Logger.logRateLimited("lag-probe-writer", "Replication lag probe: heartbeat write failed: %s", e);
+                if (!pause(configParser.getLagProbeIntervalMs())) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Polls a replica and records when each heartbeat becomes visible
+    private static void poll(ConfigParser configParser, Replica replica) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (DatabaseConnection dbConnection = new DatabaseConnection(configParser, replica.dbIndex, false)) {
+                Connection connection = dbConnection.getConnection();
+                // Every read must see the latest applied state, not a transaction snapshot
+                connection.setAutoCommit(true);
+                while (true) {
+                    long seen = readSeq(connection);
+                    long now = System.nanoTime();
+                    long committed = lastCommitted.get();
+                    for (long seq = Math.max(replica.lastSeen + 1, committed - RING + 1); seq <= seen; seq++) {
+                        // A heartbeat can show up before the writer has recorded its commit time
+                        replica.lag.recordNanos(seq <= committed ? Math.max(0, now - commitNanos[(int) (seq % RING)]) : 0);
+                    }
+                    replica.lastSeen = Math.max(replica.lastSeen, seen);
+                    TimeUnit.MILLISECONDS.sleep(configParser.getLagProbePollMs());
+                }
+            } catch (SQLException e) {
+                // The heartbeat table may not have replicated yet
+                Logger.logRateLimited("lag-probe-db" + replica.dbIndex,
+                        "Replication lag probe: reading the heartbeat on database%d failed: %s", replica.dbIndex, e);
+                if (!pause(configParser.getLagProbeIntervalMs())) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static long readSeq(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT seq FROM " + TABLE + " WHERE id = 1")) {
+            return resultSet.next() ? resultSet.getLong(1) : -1;
+        }
+    }
+
+    // Waits until a client requests a heartbeat or the interval passes
+    private static void awaitRequest(long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        synchronized (requests) {
+            long remaining;
+            while (!requested && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(requests, remaining);
+            }
+        }
+    }
+
+    private static boolean pause(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static Thread daemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,40 @@
+package db;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+import org.postgresql.PGStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Prepares statements either client-side or as named server-side statements, using the
+ * driver-specific switches of PostgreSQL and MySQL. Other drivers get a plain PreparedStatement.
+ */
+public class StatementPreparer {
+
+    /**
+     * @param connection The connection to prepare on.
+     * @param sql        The SQL with ? placeholders; a trailing semicolon is removed.
+     * @param serverSide true to force a server-side prepared statement.
+     * @return The prepared statement.
+     */
+    public static PreparedStatement prepare(Connection connection, String sql, boolean serverSide) throws SQLException {
+        sql = sql.trim();
+        if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1);
+        }
+
+        // MySQL only prepares on the server when explicitly asked to
+        if (serverSide && connection.isWrapperFor(JdbcConnection.class)) {
+            return connection.unwrap(JdbcConnection.class).serverPrepareStatement(sql);
+        }
+
+        PreparedStatement statement = connection.prepareStatement(sql);
+        // PostgreSQL switches to a named statement after prepareThreshold executions; 0 never does
+        if (statement.isWrapperFor(PGStatement.class)) {
+            statement.unwrap(PGStatement.class).setPrepareThreshold(serverSide ? 1 : 0);
+        }
+        return statement;
+    }
+}
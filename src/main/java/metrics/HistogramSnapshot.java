@@ -0,0 +1,151 @@
+package metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of a LatencyHistogram, used by reporters to compute percentiles,
+ * interval deltas and aggregates without touching the live counters.
+ */
+public class HistogramSnapshot {
+    private final long[] counts;
+    private final long totalCount;
+    private final long totalMicros;
+    private final long maxMicros;
+
+    HistogramSnapshot(long[] counts, long totalMicros, long maxMicros) {
+        this.counts = counts;
+        this.totalMicros = totalMicros;
+        this.maxMicros = maxMicros;
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        this.totalCount = total;
+    }
+
+    /**
+     * Creates an empty snapshot, used as the starting point for interval deltas and merges.
+     *
+     * @return A snapshot with no recorded values.
+     */
+    public static HistogramSnapshot empty() {
+        return new HistogramSnapshot(new long[LatencyHistogram.BUCKET_COUNT], 0, 0);
+    }
+
+    /**
+     * Returns the values recorded since an earlier snapshot of the same histogram.
+     * The interval maximum is the upper bound of the highest non-empty bucket.
+     *
+     * @param previous The earlier snapshot.
+     * @return The delta between the two snapshots.
+     */
+    public HistogramSnapshot minus(HistogramSnapshot previous) {
+        long[] delta = new long[counts.length];
+        int highest = -1;
+        for (int i = 0; i < counts.length; i++) {
+            delta[i] = counts[i] - previous.counts[i];
+            if (delta[i] > 0) {
+                highest = i;
+            }
+        }
+        long max = highest < 0 ? 0 : Math.min(LatencyHistogram.highestValueAt(highest), maxMicros);
+        return new HistogramSnapshot(delta, totalMicros - previous.totalMicros, max);
+    }
+
+    /**
+     * Merges two snapshots, e.g. to aggregate all test cases running at one isolation level.
+     *
+     * @param other The snapshot to add.
+     * @return The combined snapshot.
+     */
+    public HistogramSnapshot plus(HistogramSnapshot other) {
+        long[] sum = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            sum[i] = counts[i] + other.counts[i];
+        }
+        return new HistogramSnapshot(sum, totalMicros + other.totalMicros, Math.max(maxMicros, other.maxMicros));
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public double getMeanMicros() {
+        return totalCount == 0 ? 0 : (double) totalMicros / totalCount;
+    }
+
+    /**
+     * Returns the value at the given percentile, reported as the highest value of its bucket.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency in microseconds.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(LatencyHistogram.highestValueAt(i), maxMicros);
+            }
+        }
+        return maxMicros;
+    }
+
+    /**
+     * Returns how many values fall in buckets that lie entirely at or below a bound, for cumulative
+     * histogram exports. Values in the bucket straddling the bound are left out.
+     *
+     * @param micros The bound in microseconds.
+     * @return The number of recorded values at or below the bound.
+     */
+    public long getCountAtOrBelow(long micros) {
+        long count = 0;
+        for (int i = 0; i < counts.length && LatencyHistogram.highestValueAt(i) <= micros; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    /**
+     * Formats the standard percentile summary in milliseconds.
+     *
+     * @return A line such as "n=10 p50=1.2 p90=3.4 p99=5.6 p99.9=7.8 max=9.0 ms".
+     */
+    public String formatPercentiles() {
+        return String.format("n=%d p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f ms",
+                totalCount,
+                getValueAtPercentile(50) / 1000.0,
+                getValueAtPercentile(90) / 1000.0,
+                getValueAtPercentile(99) / 1000.0,
+                getValueAtPercentile(99.9) / 1000.0,
+                maxMicros / 1000.0);
+    }
+
+    /**
+     * Percentiles in milliseconds for the results file.
+     */
+    public Map<String, Object> toSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", totalCount);
+        summary.put("mean_ms", getMeanMicros() / 1000.0);
+        summary.put("p50_ms", getValueAtPercentile(50) / 1000.0);
+        summary.put("p90_ms", getValueAtPercentile(90) / 1000.0);
+        summary.put("p99_ms", getValueAtPercentile(99) / 1000.0);
+        summary.put("p999_ms", getValueAtPercentile(99.9) / 1000.0);
+        summary.put("max_ms", maxMicros / 1000.0);
+        return summary;
+    }
+}
@@ -0,0 +1,87 @@
+package metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory, thread, GC and CPU figures of the benchmark client's own JVM, so a saturated client can be told
+ * apart from a slow database.
+ */
+public class JvmStats {
+
+    /**
+     * Current JVM figures for the JSON metrics page.
+     */
+    public static Map<String, Object> summarize() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("uptime_seconds", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+        stats.put("heap_used_bytes", heap.getUsed());
+        stats.put("heap_committed_bytes", heap.getCommitted());
+        stats.put("heap_max_bytes", heap.getMax());
+        stats.put("nonheap_used_bytes", memory.getNonHeapMemoryUsage().getUsed());
+        stats.put("threads", threads.getThreadCount());
+        stats.put("daemon_threads", threads.getDaemonThreadCount());
+        stats.put("peak_threads", threads.getPeakThreadCount());
+        stats.put("available_processors", os.getAvailableProcessors());
+        stats.put("system_load_average", os.getSystemLoadAverage());
+        stats.put("process_cpu_load", processCpuLoad(os));
+        Map<String, Object> gc = new LinkedHashMap<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Map<String, Object> collectorStats = new LinkedHashMap<>();
+            collectorStats.put("collections", collector.getCollectionCount());
+            collectorStats.put("time_ms", collector.getCollectionTime());
+            gc.put(collector.getName(), collectorStats);
+        }
+        stats.put("gc", gc);
+        return stats;
+    }
+
+    /**
+     * Adds the current JVM figures to a Prometheus page.
+     */
+    public static void export(PrometheusWriter prometheus) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        String help = "Client JVM memory in bytes";
+        prometheus.gauge("cumberbench_jvm_memory_used_bytes", help, heap.getUsed(), "area", "heap");
+        prometheus.gauge("cumberbench_jvm_memory_used_bytes", help, nonHeap.getUsed(), "area", "nonheap");
+        prometheus.gauge("cumberbench_jvm_memory_committed_bytes", help, heap.getCommitted(), "area", "heap");
+        prometheus.gauge("cumberbench_jvm_memory_committed_bytes", help, nonHeap.getCommitted(), "area", "nonheap");
+        prometheus.gauge("cumberbench_jvm_memory_max_bytes", help, heap.getMax(), "area", "heap");
+        prometheus.gauge("cumberbench_jvm_threads", "Live client JVM threads", threads.getThreadCount());
+        prometheus.gauge("cumberbench_jvm_threads_peak", "Peak live client JVM threads", threads.getPeakThreadCount());
+        prometheus.gauge("cumberbench_jvm_uptime_seconds", "Client JVM uptime",
+                ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+        prometheus.gauge("cumberbench_system_load_average", "One-minute load average of the client host",
+                os.getSystemLoadAverage());
+        prometheus.gauge("cumberbench_process_cpu_load", "CPU share of the client process, 0 to 1, -1 if unknown",
+                processCpuLoad(os));
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            prometheus.counter("cumberbench_jvm_gc_collections_total", "Client JVM garbage collections",
+                    collector.getCollectionCount(), "collector", collector.getName());
+            prometheus.counter("cumberbench_jvm_gc_time_seconds_total", "Time spent in client JVM garbage collection",
+                    collector.getCollectionTime() / 1000.0, "collector", collector.getName());
+        }
+    }
+
+    // Only the HotSpot-specific bean knows the process CPU load
+    private static double processCpuLoad(OperatingSystemMXBean os) {
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,83 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HDR-style log-linear latency histogram with microsecond resolution.
+ * Values below 128us get their own bucket; above that every power of two is split into 64 linear
+ * sub-buckets, which keeps the relative error under 1.6% up to the highest trackable value.
+ * Recording is a single atomic increment and never allocates or locks.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; // 128
+    static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1; // 64
+    static final long HIGHEST_TRACKABLE_MICROS = (1L << 36) - 1; // ~19 hours
+    static final int BUCKET_COUNT = indexFor(HIGHEST_TRACKABLE_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a latency measured with System.nanoTime().
+     *
+     * @param nanos The elapsed time in nanoseconds.
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    /**
+     * Records a latency in microseconds, clamping out-of-range values.
+     *
+     * @param micros The elapsed time in microseconds.
+     */
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        } else if (micros > HIGHEST_TRACKABLE_MICROS) {
+            micros = HIGHEST_TRACKABLE_MICROS;
+        }
+        counts.getAndIncrement(indexFor(micros));
+        totalMicros.getAndAdd(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+     * Copies the current cumulative state. Only called by reporters, never by workers.
+     *
+     * @return A point-in-time snapshot of this histogram.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new HistogramSnapshot(copy, totalMicros.get(), maxMicros.get());
+    }
+
+    // Maps a value to its bucket index
+    static int indexFor(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(micros)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) ((micros >>> shift) - SUB_BUCKET_HALF);
+    }
+
+    // Returns the highest value that maps to the given bucket index
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long lowest = (long) (offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,150 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per test case set of latency histograms, one for each operation type, plus conflict, retry and error counts.
+ * Workers look this up once and then record against it without any map lookups.
+ */
+public class LatencyRecorder {
+    private final String testCaseName;
+    private final String isolationLevel;
+    private final String keyDistribution;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[OpType.ALL.length];
+    private final AtomicLong conflicts = new AtomicLong(); // Serialization failures and deadlocks in the measured window
+    private final AtomicLong errors = new AtomicLong(); // Consistency failures and unexpected SQL errors, whole run
+    private final AtomicLong skippedChecks = new AtomicLong(); // RC observer checks that never ran, whole run
+    private final AtomicLong retries = new AtomicLong(); // Transactions restarted after a conflict, measured window
+    private final AtomicLong giveUps = new AtomicLong(); // Transactions abandoned after a conflict, measured window
+    private final AtomicLong wastedNanos = new AtomicLong(); // Time spent in attempts that were rolled back, measured window
+    private final AtomicLong batchStatements = new AtomicLong(); // Statements sent in JDBC batches, measured window
+    private final AtomicLong batchRows = new AtomicLong(); // Rows affected by JDBC batches, measured window
+
+    LatencyRecorder(String testCaseName, String isolationLevel, String keyDistribution) {
+        this.testCaseName = testCaseName;
+        this.isolationLevel = isolationLevel;
+        this.keyDistribution = keyDistribution;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the time elapsed since startNanos for an operation, while the measured window is open.
+     *
+     * @param op         The operation type.
+     * @param startNanos The System.nanoTime() value taken before the operation.
+     */
+    public void record(OpType op, long startNanos) {
+        if (!MetricsRegistry.isMeasuring()) {
+            return;
+        }
+        histograms[op.ordinal()].recordNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a JDBC batch: its latency, the statements it carried and the rows it affected.
+     *
+     * @param startNanos The System.nanoTime() value taken before the batch was sent.
+     * @param statements Statements in the batch.
+     * @param rows       Rows affected as reported by the driver.
+     */
+    public void recordBatch(long startNanos, int statements, long rows) {
+        if (!MetricsRegistry.isMeasuring()) {
+            return;
+        }
+        histograms[OpType.BATCH.ordinal()].recordNanos(System.nanoTime() - startNanos);
+        batchStatements.addAndGet(statements);
+        batchRows.addAndGet(rows);
+    }
+
+    /** Counts a serialization failure or deadlock (SQLSTATE 40001/40P01). */
+    public void recordConflict() {
+        if (MetricsRegistry.isMeasuring()) {
+            conflicts.incrementAndGet();
+        }
+    }
+
+    /** Counts a transaction attempt that is retried after a conflict. */
+    public void recordRetry() {
+        if (MetricsRegistry.isMeasuring()) {
+            retries.incrementAndGet();
+        }
+    }
+
+    /** Counts a transaction that is abandoned after its last attempt hit a conflict. */
+    public void recordGiveUp() {
+        if (MetricsRegistry.isMeasuring()) {
+            giveUps.incrementAndGet();
+        }
+    }
+
+    /** Adds the duration of a transaction attempt that was rolled back because of a conflict. */
+    public void recordWasted(long nanos) {
+        if (MetricsRegistry.isMeasuring()) {
+            wastedNanos.addAndGet(nanos);
+        }
+    }
+
+    /** Counts a consistency failure or an unexpected SQL error, in any phase. */
+    public void recordError() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * Counts RC observer checks that could not run, for example because the observer's session failed. The
+     * visibility they should have verified is unknown, so they also count as errors.
+     */
+    public void recordSkippedChecks(int checks) {
+        skippedChecks.addAndGet(checks);
+        errors.addAndGet(checks);
+    }
+
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getSkippedChecks() {
+        return skippedChecks.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getGiveUps() {
+        return giveUps.get();
+    }
+
+    public long getWastedNanos() {
+        return wastedNanos.get();
+    }
+
+    public long getBatchStatements() {
+        return batchStatements.get();
+    }
+
+    public long getBatchRows() {
+        return batchRows.get();
+    }
+
+    public LatencyHistogram getHistogram(OpType op) {
+        return histograms[op.ordinal()];
+    }
+
+    public String getTestCaseName() {
+        return testCaseName;
+    }
+
+    public String getIsolationLevel() {
+        return isolationLevel;
+    }
+
+    public String getKeyDistribution() {
+        return keyDistribution;
+    }
+}
@@ -0,0 +1,301 @@
+package metrics;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of latency recorders keyed by test case, plus the interval and whole-run reports.
+ * Reporting state is only touched by the monitoring thread.
+ */
+public class MetricsRegistry {
+    private static final ConcurrentMap<String, LatencyRecorder> recorders = new ConcurrentHashMap<>();
+    private static final Map<String, HistogramSnapshot> lastSnapshots = new HashMap<>();
+    private static final Map<String, long[]> lastCounts = new HashMap<>(); // Counters at the last interval, by test case
+    // Indexes into the array returned by counts()
+    private static final int CONFLICTS = 0, ERRORS = 1, RETRIES = 2, GIVE_UPS = 3, WASTED_NANOS = 4, BATCH_STATEMENTS = 5,
+            BATCH_ROWS = 6, SKIPPED_CHECKS = 7;
+    private static volatile boolean measuring = true; // Only the measured window is recorded
+
+    /**
+     * Opens or closes the measured window; latencies outside it (load, warmup, cooldown) are not recorded.
+     */
+    public static void setMeasuring(boolean measuring) {
+        MetricsRegistry.measuring = measuring;
+    }
+
+    public static boolean isMeasuring() {
+        return measuring;
+    }
+
+    /**
+     * Returns the recorder for a test case, creating it on first use.
+     *
+     * @param testCaseName    The test case name.
+     * @param isolationLevel  The isolation level the test case runs at.
+     * @param keyDistribution Name of the test case's key distribution, for the per-distribution reports.
+     * @return The shared recorder for the test case.
+     */
+    public static LatencyRecorder recorderFor(String testCaseName, String isolationLevel, String keyDistribution) {
+        return recorders.computeIfAbsent(testCaseName, name -> new LatencyRecorder(name, isolationLevel, keyDistribution));
+    }
+
+    /**
+     * Prints the latency percentiles recorded since the previous interval report, and adds each test case's
+     * throughput, abort/conflict rates, errors and latencies to the results time series.
+     *
+     * @param intervalSeconds Length of the interval.
+     */
+    public static synchronized void printIntervalReport(double intervalSeconds) {
+        Map<String, HistogramSnapshot> byIsolation = new TreeMap<>();
+        Map<String, HistogramSnapshot[]> byDistribution = new TreeMap<>();
+        Map<String, long[]> countsByDistribution = new TreeMap<>();
+        for (LatencyRecorder recorder : sortedRecorders().values()) {
+            HistogramSnapshot[] intervals = new HistogramSnapshot[OpType.ALL.length];
+            for (OpType op : OpType.ALL) {
+                String key = recorder.getTestCaseName() + "/" + op;
+                HistogramSnapshot current = recorder.getHistogram(op).snapshot();
+                HistogramSnapshot previous = lastSnapshots.getOrDefault(key, HistogramSnapshot.empty());
+                lastSnapshots.put(key, current);
+                HistogramSnapshot interval = current.minus(previous);
+                intervals[op.ordinal()] = interval;
+                if (interval.getTotalCount() == 0) {
+                    continue;
+                }
+                System.out.println("  interval " + label(recorder, op) + " " + interval.formatPercentiles());
+                byIsolation.merge(recorder.getIsolationLevel() + "/" + op, interval, HistogramSnapshot::plus);
+            }
+            long[] current = counts(recorder);
+            long[] previous = lastCounts.getOrDefault(recorder.getTestCaseName(), new long[current.length]);
+            lastCounts.put(recorder.getTestCaseName(), current);
+            long[] interval = new long[current.length];
+            for (int i = 0; i < interval.length; i++) {
+                interval[i] = current[i] - previous[i];
+            }
+            if (interval[CONFLICTS] > 0) {
+                System.out.println("  interval " + recorder.getTestCaseName() + " " + formatRetries(interval));
+            }
+            addIntervalValues("test_case", recorder.getTestCaseName(), testCaseStats(intervals, interval, intervalSeconds));
+            mergeByDistribution(byDistribution, countsByDistribution, recorder, intervals, interval);
+        }
+        for (Map.Entry<String, HistogramSnapshot> entry : byIsolation.entrySet()) {
+            System.out.println("  interval [" + entry.getKey() + "] " + entry.getValue().formatPercentiles());
+        }
+        for (Map.Entry<String, HistogramSnapshot[]> entry : byDistribution.entrySet()) {
+            long[] counts = countsByDistribution.get(entry.getKey());
+            HistogramSnapshot transaction = entry.getValue()[OpType.TRANSACTION.ordinal()];
+            if (transaction.getTotalCount() > 0 || counts[CONFLICTS] > 0) {
+                System.out.println("  interval [keys " + entry.getKey() + "/TRANSACTION] " + transaction.formatPercentiles()
+                        + " " + formatRetries(counts));
+            }
+            addIntervalValues("key_distribution", entry.getKey(), testCaseStats(entry.getValue(), counts, intervalSeconds));
+        }
+    }
+
+    // Adds the numeric stats to the results time series
+    private static void addIntervalValues(String scope, String name, Map<String, Object> stats) {
+        for (Map.Entry<String, Object> stat : stats.entrySet()) {
+            if (stat.getValue() instanceof Number) {
+                RunResults.addIntervalValue(scope, name, stat.getKey(), ((Number) stat.getValue()).doubleValue());
+            }
+        }
+    }
+
+    // Adds a test case's histograms and counters to the totals of its key distribution
+    private static void mergeByDistribution(Map<String, HistogramSnapshot[]> byDistribution, Map<String, long[]> countsByDistribution,
+            LatencyRecorder recorder, HistogramSnapshot[] histograms, long[] counts) {
+        HistogramSnapshot[] merged = byDistribution.get(recorder.getKeyDistribution());
+        long[] mergedCounts = countsByDistribution.get(recorder.getKeyDistribution());
+        if (merged == null) {
+            byDistribution.put(recorder.getKeyDistribution(), histograms.clone());
+            countsByDistribution.put(recorder.getKeyDistribution(), counts.clone());
+            return;
+        }
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = merged[i].plus(histograms[i]);
+        }
+        for (int i = 0; i < mergedCounts.length; i++) {
+            mergedCounts[i] += counts[i];
+        }
+    }
+
+    /**
+     * Prints the latency percentiles for the measured window.
+     */
+    public static synchronized void printRunSummary() {
+        System.out.println("Latency summary for the measured window:");
+        Map<String, HistogramSnapshot> byIsolation = new TreeMap<>();
+        Map<String, HistogramSnapshot[]> byDistribution = new TreeMap<>();
+        Map<String, long[]> countsByDistribution = new TreeMap<>();
+        for (LatencyRecorder recorder : sortedRecorders().values()) {
+            HistogramSnapshot[] totals = new HistogramSnapshot[OpType.ALL.length];
+            for (OpType op : OpType.ALL) {
+                HistogramSnapshot total = recorder.getHistogram(op).snapshot();
+                totals[op.ordinal()] = total;
+                if (total.getTotalCount() == 0) {
+                    continue;
+                }
+                System.out.println("  total " + label(recorder, op) + " " + total.formatPercentiles());
+                byIsolation.merge(recorder.getIsolationLevel() + "/" + op, total, HistogramSnapshot::plus);
+            }
+            long[] counts = counts(recorder);
+            if (counts[CONFLICTS] > 0) {
+                System.out.println("  total " + recorder.getTestCaseName() + " " + formatRetries(counts));
+            }
+            if (counts[SKIPPED_CHECKS] > 0) {
+                System.out.println("  total " + recorder.getTestCaseName() + " skipped visibility checks=" + counts[SKIPPED_CHECKS]
+                        + " (counted as errors)");
+            }
+            mergeByDistribution(byDistribution, countsByDistribution, recorder, totals, counts);
+        }
+        for (Map.Entry<String, HistogramSnapshot> entry : byIsolation.entrySet()) {
+            System.out.println("  total [" + entry.getKey() + "] " + entry.getValue().formatPercentiles());
+        }
+        for (Map.Entry<String, HistogramSnapshot[]> entry : byDistribution.entrySet()) {
+            HistogramSnapshot transaction = entry.getValue()[OpType.TRANSACTION.ordinal()];
+            System.out.println("  total [keys " + entry.getKey() + "/TRANSACTION] " + transaction.formatPercentiles()
+                    + " " + formatRetries(countsByDistribution.get(entry.getKey())));
+        }
+    }
+
+    /**
+     * Summary of every test case for the measured window, for the results file.
+     *
+     * @param measuredSeconds Length of the measured window.
+     */
+    public static synchronized Map<String, Object> summarize(double measuredSeconds) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (LatencyRecorder recorder : sortedRecorders().values()) {
+            HistogramSnapshot[] totals = new HistogramSnapshot[OpType.ALL.length];
+            Map<String, Object> latency = new LinkedHashMap<>();
+            for (OpType op : OpType.ALL) {
+                totals[op.ordinal()] = recorder.getHistogram(op).snapshot();
+                if (totals[op.ordinal()].getTotalCount() > 0) {
+                    latency.put(op.name().toLowerCase(), totals[op.ordinal()].toSummary());
+                }
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("isolation", recorder.getIsolationLevel());
+            stats.put("key_distribution", recorder.getKeyDistribution());
+            stats.putAll(testCaseStats(totals, counts(recorder), measuredSeconds));
+            stats.put("latency", latency);
+            summary.put(recorder.getTestCaseName(), stats);
+        }
+        return summary;
+    }
+
+    /**
+     * Throughput, conflicts and transaction latency of each key distribution over the measured window, for the
+     * results file.
+     *
+     * @param measuredSeconds Length of the measured window.
+     */
+    public static synchronized Map<String, Object> summarizeByDistribution(double measuredSeconds) {
+        Map<String, HistogramSnapshot[]> byDistribution = new TreeMap<>();
+        Map<String, long[]> countsByDistribution = new TreeMap<>();
+        for (LatencyRecorder recorder : sortedRecorders().values()) {
+            HistogramSnapshot[] totals = new HistogramSnapshot[OpType.ALL.length];
+            for (OpType op : OpType.ALL) {
+                totals[op.ordinal()] = recorder.getHistogram(op).snapshot();
+            }
+            mergeByDistribution(byDistribution, countsByDistribution, recorder, totals, counts(recorder));
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (Map.Entry<String, HistogramSnapshot[]> entry : byDistribution.entrySet()) {
+            summary.put(entry.getKey(), testCaseStats(entry.getValue(), countsByDistribution.get(entry.getKey()), measuredSeconds));
+        }
+        return summary;
+    }
+
+    /**
+     * Adds every test case's per-operation latency histograms and its conflict, retry, error and batch
+     * counters for the measured window to a Prometheus page. Reads the recorders without resetting anything.
+     *
+     * @param prometheus The page being built.
+     */
+    public static synchronized void export(PrometheusWriter prometheus) {
+        for (LatencyRecorder recorder : sortedRecorders().values()) {
+            String name = recorder.getTestCaseName();
+            for (OpType op : OpType.ALL) {
+                HistogramSnapshot total = recorder.getHistogram(op).snapshot();
+                if (total.getTotalCount() > 0) {
+                    prometheus.histogram("cumberbench_operation_latency_seconds", "Operation latency in the measured window",
+                            total, "test_case", name, "isolation", recorder.getIsolationLevel(), "op", op.name().toLowerCase());
+                }
+            }
+            long[] counts = counts(recorder);
+            prometheus.counter("cumberbench_conflicts_total", "Serialization failures and deadlocks", counts[CONFLICTS],
+                    "test_case", name);
+            prometheus.counter("cumberbench_retries_total", "Transactions retried after a conflict", counts[RETRIES],
+                    "test_case", name);
+            prometheus.counter("cumberbench_give_ups_total", "Transactions abandoned after a conflict", counts[GIVE_UPS],
+                    "test_case", name);
+            prometheus.counter("cumberbench_wasted_seconds_total", "Time spent in attempts that were rolled back",
+                    counts[WASTED_NANOS] / 1e9, "test_case", name);
+            prometheus.counter("cumberbench_errors_total", "Consistency failures and unexpected SQL errors", counts[ERRORS],
+                    "test_case", name);
+            prometheus.counter("cumberbench_skipped_checks_total", "RC observer checks that could not run, also counted as errors",
+                    counts[SKIPPED_CHECKS], "test_case", name);
+            prometheus.counter("cumberbench_batch_statements_total", "Statements sent in JDBC batches",
+                    counts[BATCH_STATEMENTS], "test_case", name);
+            prometheus.counter("cumberbench_batch_rows_total", "Rows affected by JDBC batches", counts[BATCH_ROWS],
+                    "test_case", name);
+        }
+    }
+
+    // Throughput, abort and conflict rates, retries, errors and transaction latency from per-operation histograms
+    private static Map<String, Object> testCaseStats(HistogramSnapshot[] byOp, long[] counts, double seconds) {
+        long conflicts = counts[CONFLICTS];
+        long transactions = byOp[OpType.TRANSACTION.ordinal()].getTotalCount();
+        long aborts = byOp[OpType.ROLLBACK.ordinal()].getTotalCount();
+        long ended = byOp[OpType.COMMIT.ordinal()].getTotalCount() + aborts;
+        // Batched statements have no latency of their own, only their batch does
+        long queries = byOp[OpType.INSERT.ordinal()].getTotalCount() + byOp[OpType.DELETE.ordinal()].getTotalCount()
+                + byOp[OpType.UPDATE.ordinal()].getTotalCount() + byOp[OpType.SELECT.ordinal()].getTotalCount()
+                + counts[BATCH_STATEMENTS];
+        long batches = byOp[OpType.BATCH.ordinal()].getTotalCount();
+        HistogramSnapshot transaction = byOp[OpType.TRANSACTION.ordinal()];
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("transactions", transactions);
+        stats.put("tps", seconds > 0 ? transactions / seconds : 0.0);
+        stats.put("qps", seconds > 0 ? queries / seconds : 0.0);
+        stats.put("aborts", aborts);
+        stats.put("abort_rate", ended > 0 ? (double) aborts / ended : 0.0);
+        stats.put("conflicts", conflicts);
+        stats.put("conflict_rate", ended > 0 ? (double) conflicts / ended : 0.0);
+        stats.put("retries", counts[RETRIES]);
+        stats.put("give_ups", counts[GIVE_UPS]);
+        stats.put("wasted_ms", counts[WASTED_NANOS] / 1_000_000.0);
+        stats.put("errors", counts[ERRORS]);
+        stats.put("skipped_checks", counts[SKIPPED_CHECKS]);
+        stats.put("batches", batches);
+        stats.put("statements_per_batch", batches > 0 ? (double) counts[BATCH_STATEMENTS] / batches : 0.0);
+        stats.put("rows_per_batch", batches > 0 ? (double) counts[BATCH_ROWS] / batches : 0.0);
+        stats.put("batch_p99_ms", byOp[OpType.BATCH.ordinal()].getValueAtPercentile(99) / 1000.0);
+        stats.put("transaction_p50_ms", transaction.getValueAtPercentile(50) / 1000.0);
+        stats.put("transaction_p99_ms", transaction.getValueAtPercentile(99) / 1000.0);
+        stats.put("transaction_max_ms", transaction.getMaxMicros() / 1000.0);
+        return stats;
+    }
+
+    private static long[] counts(LatencyRecorder recorder) {
+        return new long[] { recorder.getConflicts(), recorder.getErrors(), recorder.getRetries(), recorder.getGiveUps(),
+                recorder.getWastedNanos(), recorder.getBatchStatements(), recorder.getBatchRows(), recorder.getSkippedChecks() };
+    }
+
+    private static String formatRetries(long[] counts) {
+        return String.format("conflicts=%d retries=%d give-ups=%d wasted=%.1fms", counts[CONFLICTS], counts[RETRIES],
+                counts[GIVE_UPS], counts[WASTED_NANOS] / 1_000_000.0);
+    }
+
+    private static Map<String, LatencyRecorder> sortedRecorders() {
+        return new TreeMap<>(recorders);
+    }
+
+    private static String label(LatencyRecorder recorder, OpType op) {
+        return recorder.getTestCaseName() + "/" + recorder.getIsolationLevel() + "/" + op;
+    }
+}
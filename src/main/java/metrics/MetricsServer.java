@@ -0,0 +1,118 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Optional embedded HTTP endpoint for watching long runs: /metrics serves the Prometheus text format and
+ * /metrics.json the same figures as JSON. The monitoring thread renders both pages once per interval and
+ * publishes them through a volatile reference; a scrape only copies the last published bytes, so it never
+ * touches the histograms or takes a lock that clients use.
+ */
+public class MetricsServer {
+    private static final String PROMETHEUS_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+    private static HttpServer server;
+    private static ExecutorService executor;
+    private static volatile Page page; // Last published snapshot, null until the first one
+
+    // Both renderings of one snapshot, so the two endpoints always agree
+    private static class Page {
+        final byte[] prometheus;
+        final byte[] json;
+
+        Page(String prometheus, String json) {
+            this.prometheus = prometheus.getBytes(StandardCharsets.UTF_8);
+            this.json = json.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Starts the server on a single daemon thread.
+     *
+     * @param bindAddress The address to listen on.
+     * @param port        The port to listen on.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static synchronized void start(String bindAddress, int port) throws IOException {
+        if (server != null) {
+            return;
+        }
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        httpServer.createContext("/metrics", exchange -> serve(exchange, true));
+        httpServer.createContext("/metrics.json", exchange -> serve(exchange, false));
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        server = httpServer;
+        System.out.println("Metrics endpoint: http://" + bindAddress + ":" + httpServer.getAddress().getPort() + "/metrics");
+    }
+
+    public static synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * Replaces the pages served to scrapers; called by the monitoring thread.
+     *
+     * @param prometheus The page in the Prometheus text format.
+     * @param json       The same snapshot as JSON.
+     */
+    public static void publish(String prometheus, String json) {
+        page = new Page(prometheus, json);
+    }
+
+    /**
+     * Stops the server without waiting for open exchanges.
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    private static void serve(HttpExchange exchange, boolean prometheus) throws IOException {
+        try {
+            // Contexts match by prefix, so /metrics would also answer /metricsfoo
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            Page current = page;
+            if (!path.equals(exchange.getHttpContext().getPath())) {
+                send(exchange, 404, "text/plain; charset=utf-8", "not found\n".getBytes(StandardCharsets.UTF_8));
+            } else if (!method.equals("GET") && !method.equals("HEAD")) {
+                send(exchange, 405, "text/plain; charset=utf-8", "method not allowed\n".getBytes(StandardCharsets.UTF_8));
+            } else if (current == null) {
+                send(exchange, 503, "text/plain; charset=utf-8", "no snapshot yet\n".getBytes(StandardCharsets.UTF_8));
+            } else {
+                send(exchange, 200, prometheus ? PROMETHEUS_TYPE : JSON_TYPE, prometheus ? current.prometheus : current.json);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(status, head ? -1 : body.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package metrics;
+
+/**
+ * Operation types whose latency is recorded per test case.
+ */
+public enum OpType {
+    INSERT,
+    DELETE,
+    UPDATE,
+    SELECT,
+    BATCH, // One JDBC batch of a transaction's write set, in batched mode
+    COMMIT,
+    ROLLBACK,
+    TRANSACTION; // Whole transaction, measured from its intended start in open-loop mode
+
+    // Cached copy of values() so the hot path never clones the array
+    static final OpType[] ALL = values();
+}
@@ -0,0 +1,116 @@
+package metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds a page in the Prometheus text exposition format. Samples are grouped by metric family so each
+ * family gets one HELP and TYPE line however many label sets it has. Not thread-safe; one writer is
+ * filled by the monitoring thread and then rendered once.
+ */
+public class PrometheusWriter {
+    // Upper bounds of the exported latency buckets, in seconds, written as they appear in the le label
+    private static final String[] BUCKET_SECONDS = { "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1",
+            "0.25", "0.5", "1", "2.5", "5", "10" };
+
+    private final Map<String, StringBuilder> families = new LinkedHashMap<>();
+
+    /**
+     * Adds a gauge sample.
+     *
+     * @param name   The metric name.
+     * @param help   Description shown with the family.
+     * @param value  The current value.
+     * @param labels Label names and values, alternating.
+     */
+    public void gauge(String name, String help, double value, String... labels) {
+        sample(family(name, help, "gauge"), name, labels, null, value);
+    }
+
+    /**
+     * Adds a counter sample; the name should end in _total.
+     *
+     * @param name   The metric name.
+     * @param help   Description shown with the family.
+     * @param value  The running total.
+     * @param labels Label names and values, alternating.
+     */
+    public void counter(String name, String help, double value, String... labels) {
+        sample(family(name, help, "counter"), name, labels, null, value);
+    }
+
+    /**
+     * Adds a latency histogram in seconds, with cumulative buckets, a sum and a count.
+     *
+     * @param name      The metric name, ending in _seconds.
+     * @param help      Description shown with the family.
+     * @param histogram The recorded latencies.
+     * @param labels    Label names and values, alternating.
+     */
+    public void histogram(String name, String help, HistogramSnapshot histogram, String... labels) {
+        StringBuilder family = family(name, help, "histogram");
+        for (String bound : BUCKET_SECONDS) {
+            long micros = Math.round(Double.parseDouble(bound) * 1_000_000);
+            sample(family, name + "_bucket", labels, bound, histogram.getCountAtOrBelow(micros));
+        }
+        sample(family, name + "_bucket", labels, "+Inf", histogram.getTotalCount());
+        sample(family, name + "_sum", labels, null, histogram.getTotalMicros() / 1e6);
+        sample(family, name + "_count", labels, null, histogram.getTotalCount());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder page = new StringBuilder();
+        for (StringBuilder family : families.values()) {
+            page.append(family);
+        }
+        return page.toString();
+    }
+
+    private StringBuilder family(String name, String help, String type) {
+        StringBuilder family = families.get(name);
+        if (family == null) {
+            family = new StringBuilder();
+            family.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            family.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            families.put(name, family);
+        }
+        return family;
+    }
+
+    private static void sample(StringBuilder family, String name, String[] labels, String le, double value) {
+        family.append(name);
+        if (labels.length > 0 || le != null) {
+            family.append('{');
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (i > 0) {
+                    family.append(',');
+                }
+                family.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            if (le != null) {
+                family.append(labels.length > 0 ? "," : "").append("le=\"").append(le).append('"');
+            }
+            family.append('}');
+        }
+        family.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        // Whole numbers without a trailing ".0", e.g. counts and sizes
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
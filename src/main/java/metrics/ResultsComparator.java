@@ -0,0 +1,149 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The compare command: diffs the JSON results of a baseline and a candidate run and fails when throughput
+ * drops or transaction p99 latency rises beyond the thresholds, or when the candidate reports new errors.
+ *
+ * Usage: compare baseline.json candidate.json [--max-tps-drop PCT] [--max-p99-rise PCT]
+ */
+public class ResultsComparator {
+    private static final double DEFAULT_MAX_TPS_DROP = 5.0; // Percent
+    private static final double DEFAULT_MAX_P99_RISE = 10.0; // Percent
+
+    private final double maxTpsDrop;
+    private final double maxP99Rise;
+    private int regressions;
+
+    ResultsComparator(double maxTpsDrop, double maxP99Rise) {
+        this.maxTpsDrop = maxTpsDrop;
+        this.maxP99Rise = maxP99Rise;
+    }
+
+    /**
+     * Runs the compare command.
+     *
+     * @return 0 if there is no regression, 1 on a regression, 2 on bad arguments or unreadable files.
+     */
+    public static int run(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: compare baseline.json candidate.json [--max-tps-drop PCT] [--max-p99-rise PCT]");
+            return 2;
+        }
+        double maxTpsDrop = DEFAULT_MAX_TPS_DROP;
+        double maxP99Rise = DEFAULT_MAX_P99_RISE;
+        try {
+            for (int i = 2; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                if (args[i].equals("--max-tps-drop")) {
+                    maxTpsDrop = Double.parseDouble(args[i + 1]);
+                } else if (args[i].equals("--max-p99-rise")) {
+                    maxP99Rise = Double.parseDouble(args[i + 1]);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            Map<String, Object> baseline = read(args[0]);
+            Map<String, Object> candidate = read(args[1]);
+            ResultsComparator comparator = new ResultsComparator(maxTpsDrop, maxP99Rise);
+            comparator.compare(baseline, candidate);
+            if (comparator.regressions > 0) {
+                System.out.println("REGRESSION: " + comparator.regressions + " check(s) failed");
+                return 1;
+            }
+            System.out.println("OK: no regression");
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("compare: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> read(String path) throws IOException {
+        Object document = Json.parse(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+        if (!(document instanceof Map)) {
+            throw new IllegalArgumentException(path + " is not a results file");
+        }
+        return (Map<String, Object>) document;
+    }
+
+    private void compare(Map<String, Object> baseline, Map<String, Object> candidate) {
+        System.out.println(String.format("%-32s %14s %14s %9s", "metric", "baseline", "candidate", "change"));
+        checkTps("run tps", number(section(baseline, "measured"), "tps"), number(section(candidate, "measured"), "tps"));
+
+        Map<String, Object> baselineCases = section(baseline, "test_cases");
+        Map<String, Object> candidateCases = section(candidate, "test_cases");
+        for (String name : baselineCases.keySet()) {
+            Map<String, Object> before = section(baselineCases, name);
+            Map<String, Object> after = section(candidateCases, name);
+            if (after.isEmpty()) {
+                System.out.println(String.format("%-32s missing from the candidate", name));
+                regressions++;
+                continue;
+            }
+            checkTps(name + " tps", number(before, "tps"), number(after, "tps"));
+            checkP99(name + " transaction p99 ms", number(before, "transaction_p99_ms"), number(after, "transaction_p99_ms"));
+            double errorsBefore = number(before, "errors");
+            double errorsAfter = number(after, "errors");
+            if (errorsAfter > errorsBefore) {
+                row(name + " errors", errorsBefore, errorsAfter, "REGRESSION");
+                regressions++;
+            }
+        }
+    }
+
+    private void checkTps(String label, double before, double after) {
+        double change = percentChange(before, after);
+        // A value the candidate no longer reports counts as a regression
+        boolean regressed = (!Double.isNaN(change) && -change > maxTpsDrop) || (!Double.isNaN(before) && Double.isNaN(after));
+        row(label, before, after, format(change) + (regressed ? "  REGRESSION" : ""));
+        if (regressed) {
+            regressions++;
+        }
+    }
+
+    private void checkP99(String label, double before, double after) {
+        double change = percentChange(before, after);
+        // A value the candidate no longer reports counts as a regression
+        boolean regressed = (!Double.isNaN(change) && change > maxP99Rise) || (!Double.isNaN(before) && Double.isNaN(after));
+        row(label, before, after, format(change) + (regressed ? "  REGRESSION" : ""));
+        if (regressed) {
+            regressions++;
+        }
+    }
+
+    private static void row(String label, double before, double after, String change) {
+        System.out.println(String.format("%-32s %14.3f %14.3f %9s", label, before, after, change));
+    }
+
+    private static double percentChange(double before, double after) {
+        if (Double.isNaN(before) || Double.isNaN(after) || before == 0) {
+            return Double.NaN;
+        }
+        return (after - before) / before * 100;
+    }
+
+    private static String format(double change) {
+        return Double.isNaN(change) ? "n/a" : String.format("%+.1f%%", change);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(Map<String, Object> parent, String key) {
+        Object value = parent.get(key);
+        return value instanceof Map ? (Map<String, Object>) value : Collections.<String, Object>emptyMap();
+    }
+
+    private static double number(Map<String, Object> section, String key) {
+        Object value = section.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+}
@@ -0,0 +1,137 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Machine-readable results of a run: a CSV time series with one row per interval, scope, name and metric
+ * (elapsed_s,phase,scope,name,metric,value), and a JSON document with the configuration and the measured
+ * summary. The JSON is also written by a shutdown hook, so runs stopped by a consistency failure keep it.
+ */
+public class RunResults {
+    private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final Map<String, Object> document = new LinkedHashMap<>();
+    private static File jsonFile;
+    private static BufferedWriter csv;
+    private static long startNanos;
+    private static long intervalElapsedMillis;
+    private static String intervalPhase = "";
+    private static boolean finished;
+    private static Runnable beforeFinish; // Fills in the summary sections
+
+    /**
+     * Creates the results files in a directory.
+     *
+     * @param directory Directory for the results, created if needed.
+     * @param config    The configuration used, by section.
+     */
+    public static synchronized void open(String directory, Map<String, Map<String, String>> config) throws IOException {
+        File dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create results directory " + dir);
+        }
+        String name = "run-" + LocalDateTime.now().format(FILE_NAME);
+        jsonFile = new File(dir, name + ".json");
+        File csvFile = new File(dir, name + ".csv");
+        csv = Files.newBufferedWriter(csvFile.toPath(), StandardCharsets.UTF_8);
+        csv.write("elapsed_s,phase,scope,name,metric,value\n");
+        startNanos = System.nanoTime();
+        document.put("started", LocalDateTime.now().toString());
+        document.put("time_series", csvFile.getName());
+        document.put("config", config);
+        Runtime.getRuntime().addShutdownHook(new Thread(RunResults::finish, "results-writer"));
+        System.out.println("Results: " + jsonFile.getPath() + ", " + csvFile.getPath());
+    }
+
+    /**
+     * Starts an interval; the values added until the next call share its timestamp and phase.
+     */
+    public static synchronized void startInterval(String phase) {
+        intervalElapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        intervalPhase = phase;
+    }
+
+    /**
+     * Adds one value of the current interval to the time series.
+     *
+     * @param scope  What the value describes: run, test_case or database.
+     * @param name   The test case or database name, or "all".
+     * @param metric The metric, e.g. tps or transaction_p99_ms.
+     */
+    public static synchronized void addIntervalValue(String scope, String name, String metric, double value) {
+        if (csv == null || finished) {
+            return;
+        }
+        try {
+            csv.write(String.format("%.3f,%s,%s,%s,%s,%s\n", intervalElapsedMillis / 1000.0, intervalPhase, scope,
+                    name, metric, Double.isNaN(value) ? "" : String.valueOf(Math.round(value * 1000) / 1000.0)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            csv = null;
+        }
+    }
+
+    /** Flushes the rows of the current interval. */
+    public static synchronized void flushInterval() {
+        if (csv == null || finished) {
+            return;
+        }
+        try {
+            csv.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Sets a top-level section of the JSON document.
+     */
+    public static synchronized void put(String key, Object value) {
+        document.put(key, value);
+    }
+
+    /**
+     * Sets the callback that adds the summary sections right before the JSON document is written.
+     */
+    public static synchronized void beforeFinish(Runnable callback) {
+        beforeFinish = callback;
+    }
+
+    /**
+     * Writes the JSON document and closes the time series. Only the first call has an effect.
+     */
+    public static synchronized void finish() {
+        if (jsonFile == null || finished) {
+            return;
+        }
+        finished = true;
+        if (beforeFinish != null) {
+            try {
+                beforeFinish.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        try {
+            if (csv != null) {
+                csv.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try (Writer writer = Files.newBufferedWriter(jsonFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(Json.write(document));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Transaction and query counters kept separately per test case, database, worker role and outcome.
+ * Each cell counts into LongAdders, which spread concurrent increments over per-thread slots instead of
+ * one contended cache line. Workers look their cell up once; only the reporter sums the cells, through
+ * snapshot(). Counters cover the whole run; the measured window is the difference of two snapshots.
+ */
+public class WorkloadCounters {
+
+    /** The kind of client a count comes from. */
+    public enum Role {
+        READ_ONLY, MIXED, WRITER, READ_COMMITTED
+    }
+
+    /** How a transaction attempt ended. */
+    public enum Outcome {
+        COMMIT, ROLLBACK, CONFLICT, ERROR
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final int QUERIES = OUTCOMES.length; // Index of the query count in a snapshot row
+
+    private static final ConcurrentMap<String, Cell> cells = new ConcurrentHashMap<>();
+
+    /**
+     * The counters of one test case, database and role, shared by every client in that combination.
+     */
+    public static final class Cell {
+        private final String testCaseName;
+        private final int dbIndex;
+        private final Role role;
+        private final LongAdder[] adders = new LongAdder[QUERIES + 1];
+
+        private Cell(String testCaseName, int dbIndex, Role role) {
+            this.testCaseName = testCaseName;
+            this.dbIndex = dbIndex;
+            this.role = role;
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new LongAdder();
+            }
+        }
+
+        /** Counts a transaction attempt that ended with the given outcome. */
+        public void record(Outcome outcome) {
+            adders[outcome.ordinal()].increment();
+        }
+
+        /** Counts one statement sent to the database. */
+        public void query() {
+            adders[QUERIES].increment();
+        }
+    }
+
+    /**
+     * Returns the cell of a test case, database and role, creating it on first use.
+     *
+     * @param testCaseName The test case name.
+     * @param dbIndex      The database the counted statements run on.
+     * @param role         The kind of client.
+     * @return The shared cell.
+     */
+    public static Cell cellFor(String testCaseName, int dbIndex, Role role) {
+        return cells.computeIfAbsent(key(testCaseName, dbIndex, role), k -> new Cell(testCaseName, dbIndex, role));
+    }
+
+    /**
+     * Sums every cell. Increments that race with the snapshot land in this one or the next.
+     *
+     * @return The running totals of every cell.
+     */
+    public static Snapshot snapshot() {
+        Map<String, Cell> sorted = new TreeMap<>(cells);
+        Map<String, long[]> rows = new LinkedHashMap<>();
+        for (Map.Entry<String, Cell> entry : sorted.entrySet()) {
+            LongAdder[] adders = entry.getValue().adders;
+            long[] row = new long[adders.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = adders[i].sum();
+            }
+            rows.put(entry.getKey(), row);
+        }
+        return new Snapshot(sorted, rows);
+    }
+
+    /**
+     * Immutable totals of every cell, used for interval deltas, the measured window and the exports.
+     */
+    public static final class Snapshot {
+        private final Map<String, Cell> cells;
+        private final Map<String, long[]> rows;
+
+        private Snapshot(Map<String, Cell> cells, Map<String, long[]> rows) {
+            this.cells = cells;
+            this.rows = rows;
+        }
+
+        /**
+         * Returns the counts since an earlier snapshot; cells created since then count from zero.
+         *
+         * @param previous The earlier snapshot.
+         * @return The delta between the two snapshots.
+         */
+        public Snapshot minus(Snapshot previous) {
+            Map<String, long[]> delta = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> entry : rows.entrySet()) {
+                long[] before = previous.rows.get(entry.getKey());
+                long[] row = entry.getValue().clone();
+                for (int i = 0; before != null && i < row.length; i++) {
+                    row[i] -= before[i];
+                }
+                delta.put(entry.getKey(), row);
+            }
+            return new Snapshot(cells, delta);
+        }
+
+        /** Committed plus rolled-back transactions; conflicted and failed attempts are not included. */
+        public long getTransactions() {
+            long transactions = 0;
+            for (long[] row : rows.values()) {
+                transactions += row[Outcome.COMMIT.ordinal()] + row[Outcome.ROLLBACK.ordinal()];
+            }
+            return transactions;
+        }
+
+        public long getQueries() {
+            long queries = 0;
+            for (long[] row : rows.values()) {
+                queries += row[QUERIES];
+            }
+            return queries;
+        }
+
+        /**
+         * Counts per test case, database and role, nested in that order. With a positive length the
+         * transaction and query rates are added.
+         *
+         * @param seconds Length of the period the snapshot covers, 0 for counts only.
+         */
+        @SuppressWarnings("unchecked")
+        public Map<String, Object> summarize(double seconds) {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> entry : rows.entrySet()) {
+                Cell cell = cells.get(entry.getKey());
+                Map<String, Object> databases = (Map<String, Object>) summary.computeIfAbsent(cell.testCaseName,
+                        k -> new LinkedHashMap<String, Object>());
+                Map<String, Object> roles = (Map<String, Object>) databases.computeIfAbsent("database" + cell.dbIndex,
+                        k -> new LinkedHashMap<String, Object>());
+                roles.put(roleName(cell.role), stats(entry.getValue(), seconds));
+            }
+            return summary;
+        }
+
+        /**
+         * Prints one line per test case, database and role.
+         *
+         * @param seconds Length of the period the snapshot covers.
+         */
+        public void print(double seconds) {
+            for (Map.Entry<String, long[]> entry : rows.entrySet()) {
+                long[] row = entry.getValue();
+                long transactions = row[Outcome.COMMIT.ordinal()] + row[Outcome.ROLLBACK.ordinal()];
+                System.out.println(String.format("  %s: commits=%d rollbacks=%d conflicts=%d errors=%d (%.1f TPS), %d queries (%.1f QPS)",
+                        entry.getKey(), row[Outcome.COMMIT.ordinal()], row[Outcome.ROLLBACK.ordinal()],
+                        row[Outcome.CONFLICT.ordinal()], row[Outcome.ERROR.ordinal()], transactions / seconds,
+                        row[QUERIES], row[QUERIES] / seconds));
+            }
+        }
+
+        /**
+         * Adds each cell's transaction and query rates to the results time series.
+         *
+         * @param seconds Length of the interval.
+         */
+        public void addIntervalValues(double seconds) {
+            for (Map.Entry<String, long[]> entry : rows.entrySet()) {
+                for (Map.Entry<String, Object> stat : stats(entry.getValue(), seconds).entrySet()) {
+                    RunResults.addIntervalValue("workload", entry.getKey(), stat.getKey(), ((Number) stat.getValue()).doubleValue());
+                }
+            }
+        }
+
+        /**
+         * Adds every cell's running totals to a Prometheus page.
+         *
+         * @param prometheus The page being built.
+         */
+        public void export(PrometheusWriter prometheus) {
+            for (Map.Entry<String, long[]> entry : rows.entrySet()) {
+                Cell cell = cells.get(entry.getKey());
+                String database = "database" + cell.dbIndex;
+                String role = roleName(cell.role);
+                for (Outcome outcome : OUTCOMES) {
+                    prometheus.counter("cumberbench_transactions_total", "Transaction attempts by how they ended, whole run",
+                            entry.getValue()[outcome.ordinal()], "test_case", cell.testCaseName, "database", database,
+                            "role", role, "outcome", outcome.name().toLowerCase());
+                }
+                prometheus.counter("cumberbench_queries_total", "Statements sent, whole run", entry.getValue()[QUERIES],
+                        "test_case", cell.testCaseName, "database", database, "role", role);
+            }
+        }
+    }
+
+    // Counts of one cell, plus rates when the period is known
+    private static Map<String, Object> stats(long[] row, double seconds) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Outcome outcome : OUTCOMES) {
+            stats.put(outcome.name().toLowerCase() + "s", row[outcome.ordinal()]);
+        }
+        stats.put("queries", row[QUERIES]);
+        if (seconds > 0) {
+            stats.put("tps", (row[Outcome.COMMIT.ordinal()] + row[Outcome.ROLLBACK.ordinal()]) / seconds);
+            stats.put("qps", row[QUERIES] / seconds);
+        }
+        return stats;
+    }
+
+    private static String key(String testCaseName, int dbIndex, Role role) {
+        return testCaseName + "/database" + dbIndex + "/" + roleName(role);
+    }
+
+    private static String roleName(Role role) {
+        return role.name().toLowerCase();
+    }
+}
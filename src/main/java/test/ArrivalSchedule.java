@@ -0,0 +1,144 @@
+package test;
+
+import util.RunControl;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides when a worker starts its next transaction. In closed mode the next transaction starts as
+ * soon as the previous one finishes. In the open-loop modes transactions are scheduled at intended
+ * start times derived from the target rate; a worker that falls behind starts late transactions
+ * immediately, and latency is measured from the intended start so server stalls show up as
+ * queueing time instead of being omitted (coordinated-omission correction).
+ */
+public class ArrivalSchedule {
+    // Interval returned once a stepped schedule ends on a zero-rate step: no more arrivals this run
+    private static final long PAUSED_FOR_GOOD = Long.MAX_VALUE / 4;
+    // Longest single park, so a paused worker still notices the stop signal
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** How transaction arrivals are generated. */
+    public enum Mode {
+        CLOSED,   // Back-to-back transactions, throughput is whatever the database allows
+        CONSTANT, // Fixed inter-arrival time
+        POISSON,  // Exponentially distributed inter-arrival times
+        STEPPED;  // Constant rate that changes on a schedule of (rate, duration) steps
+
+        public static Mode parse(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return CLOSED;
+            }
+            return valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private final Mode mode;
+    private final double[] stepRates; // Per-worker transactions per second for each step
+    private final long[] stepEnds; // End of each step in nanoseconds from the first arrival
+    private final SplittableRandom random;
+    private boolean started;
+    private long startNanos;
+    private long nextIntended;
+
+    private ArrivalSchedule(Mode mode, double[] stepRates, long[] stepEnds, SplittableRandom random) {
+        this.mode = mode;
+        this.stepRates = stepRates;
+        this.stepEnds = stepEnds;
+        this.random = random;
+    }
+
+    /**
+     * Creates a closed-loop schedule.
+     *
+     * @return A schedule that never waits.
+     */
+    public static ArrivalSchedule closed() {
+        return new ArrivalSchedule(Mode.CLOSED, null, null, null);
+    }
+
+    /**
+     * Creates the schedule for one of the test case's open-loop workers. The test case's
+     * target rate is split evenly across its workers.
+     *
+     * @param testCase The test case.
+     * @param workers  The number of workers sharing the target rate.
+     * @param random   The worker's random stream, used for Poisson arrivals.
+     * @return The worker's schedule.
+     */
+    public static ArrivalSchedule forWorker(TestCase testCase, int workers, SplittableRandom random) {
+        Mode mode = testCase.getArrivalMode();
+        if (mode == Mode.CLOSED || workers <= 0) {
+            return closed();
+        }
+        double[] rates;
+        long[] ends;
+        if (mode == Mode.STEPPED) {
+            double[] stepTps = testCase.getRateStepTps();
+            int[] stepSeconds = testCase.getRateStepSeconds();
+            rates = new double[stepTps.length];
+            ends = new long[stepTps.length];
+            long end = 0;
+            for (int i = 0; i < stepTps.length; i++) {
+                rates[i] = stepTps[i] / workers;
+                end += stepSeconds[i] * 1_000_000_000L;
+                ends[i] = end;
+            }
+        } else {
+            rates = new double[] { testCase.getTargetTps() / workers };
+            ends = new long[] { Long.MAX_VALUE };
+        }
+        return new ArrivalSchedule(mode, rates, ends, random);
+    }
+
+    /**
+     * Waits until the next intended start time, or until the run stops.
+     *
+     * @return The intended start in System.nanoTime() units; in closed mode, or when the run stopped while
+     *         waiting, the current time.
+     */
+    public long awaitNext() {
+        long now = System.nanoTime();
+        if (mode == Mode.CLOSED) {
+            return now;
+        }
+        if (!started) {
+            started = true;
+            startNanos = now;
+            nextIntended = now;
+        } else {
+            nextIntended += interval(nextIntended - startNanos);
+        }
+        long wait;
+        while ((wait = nextIntended - System.nanoTime()) > 0) {
+            if (!RunControl.isRunning()) {
+                return System.nanoTime();
+            }
+            LockSupport.parkNanos(Math.min(wait, MAX_PARK_NANOS));
+        }
+        return nextIntended;
+    }
+
+    // Time to the next arrival for a schedule position, in nanoseconds
+    private long interval(long elapsed) {
+        int step = 0;
+        while (step < stepEnds.length - 1 && elapsed >= stepEnds[step]) {
+            step++;
+        }
+        double rate = stepRates[step];
+        if (rate <= 0) {
+            // A zero-rate last step that has run out pauses arrivals for the rest of the run
+            if (elapsed >= stepEnds[step]) {
+                return PAUSED_FOR_GOOD;
+            }
+            // A zero-rate step pauses arrivals until the step ends
+            return stepEnds[step] - elapsed;
+        }
+        double meanNanos = 1_000_000_000.0 / rate;
+        if (mode == Mode.POISSON) {
+            return Math.max(1, (long) (-Math.log(1.0 - random.nextDouble()) * meanNanos));
+        }
+        return Math.max(1, (long) meanNanos);
+    }
+}
@@ -0,0 +1,115 @@
+package test;
+
+import config.ConfigParser;
+import db.ConnectionGate;
+import db.DatabaseConnection;
+import util.ControlledFileWriter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The connection a simulated client runs its transactions on, with the prepared statements and write batch
+ * bound to it. Platform-thread clients keep it for the whole run. Virtual-thread clients check it out per
+ * transaction and return it afterwards, so sessions beyond the pool size share its connections through the
+ * connection gate instead of each holding one between transactions.
+ */
+public class ClientSession implements AutoCloseable {
+    private final ConfigParser configParser;
+    private final int dbIndex;
+    private final int isolationLevel;
+    private final TestCase testCase;
+    private final SQLGenerator sqlGenerator; // null for read-only clients, which need no statements
+    private final ControlledFileWriter trace;
+    private final boolean perTransaction = ConnectionGate.isEnabled();
+    private DatabaseConnection dbConnection;
+    private PreparedOperations prepared;
+    private WriteBatch batch;
+
+    /**
+     * Creates the session; nothing is checked out until begin().
+     *
+     * @param configParser   Database configuration.
+     * @param dbIndex        The database the client runs on.
+     * @param isolationLevel JDBC isolation level of the client's transactions.
+     * @param testCase       The test case, for its execution mode.
+     * @param sqlGenerator   The client's generator, or null for a read-only client.
+     * @param trace          The client's SQL trace, or null for none.
+     */
+    public ClientSession(ConfigParser configParser, int dbIndex, int isolationLevel, TestCase testCase,
+            SQLGenerator sqlGenerator, ControlledFileWriter trace) {
+        this.configParser = configParser;
+        this.dbIndex = dbIndex;
+        this.isolationLevel = isolationLevel;
+        this.testCase = testCase;
+        this.sqlGenerator = sqlGenerator;
+        this.trace = trace;
+    }
+
+    /**
+     * Starts a transaction, checking out a connection unless the session still holds one.
+     *
+     * @return The connection, with the isolation level set and autocommit off.
+     */
+    public Connection begin() throws SQLException {
+        if (dbConnection == null) {
+            DatabaseConnection opened = new DatabaseConnection(configParser, dbIndex);
+            try {
+                Connection connection = opened.getConnection();
+                connection.setTransactionIsolation(isolationLevel);
+                connection.setAutoCommit(false);
+                if (sqlGenerator != null) {
+                    prepared = PreparedOperations.forMode(connection, testCase, sqlGenerator, trace);
+                    batch = WriteBatch.forMode(connection, testCase);
+                }
+            } catch (SQLException e) {
+                close(opened);
+                throw e;
+            }
+            dbConnection = opened;
+        }
+        return dbConnection.getConnection();
+    }
+
+    /** The prepared statements of the current connection, or null in literal and batched mode. */
+    public PreparedOperations getPrepared() {
+        return prepared;
+    }
+
+    /** The write batch of the current connection, or null unless the test case runs batched. */
+    public WriteBatch getBatch() {
+        return batch;
+    }
+
+    /**
+     * Ends a transaction that was committed or rolled back; per-transaction sessions return the connection.
+     */
+    public void end() {
+        if (perTransaction) {
+            close();
+        }
+    }
+
+    /**
+     * Returns the connection to the pool, if one is checked out.
+     */
+    @Override
+    public void close() {
+        if (dbConnection != null) {
+            close(dbConnection);
+            dbConnection = null;
+        }
+    }
+
+    private void close(DatabaseConnection opened) {
+        if (prepared != null) {
+            prepared.close();
+            prepared = null;
+        }
+        if (batch != null) {
+            batch.close();
+            batch = null;
+        }
+        opened.close();
+    }
+}
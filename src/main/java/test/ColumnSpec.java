@@ -0,0 +1,128 @@
+package test;
+
+/**
+ * A column definition compiled once from the CREATE TABLE statement: the SQLGenerator type constant
+ * plus the pre-parsed length, precision and scale, so value generation never re-parses the type string.
+ */
+public class ColumnSpec {
+    public static final int TYPE_UNKNOWN = 0; // Generated as NULL, like unrecognised types always were
+
+    private final String name;
+    private final String typeDefinition;
+    private final int type;
+    private final int minLength; // String length, or lower bound for VARCHAR(min max)
+    private final int maxLength; // Upper bound for VARCHAR(min max), -1 for a fixed length
+    private final int precision;
+    private final int scale;
+    private final boolean id;
+
+    private ColumnSpec(String name, String typeDefinition, int type, int minLength, int maxLength, int precision, int scale) {
+        this.name = name;
+        this.typeDefinition = typeDefinition;
+        this.type = type;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.precision = precision;
+        this.scale = scale;
+        this.id = name.equalsIgnoreCase("id");
+    }
+
+    /**
+     * Compiles a column definition such as "VARCHAR(10 20) NOT NULL" or "DECIMAL(10 2)".
+     *
+     * @param name           The column name.
+     * @param typeDefinition The column type as written in the CREATE TABLE statement.
+     * @return The compiled column.
+     */
+    public static ColumnSpec compile(String name, String typeDefinition) {
+        String upper = typeDefinition.toUpperCase();
+        int[] args = parseArguments(upper);
+
+        if (upper.startsWith("VARCHAR") || upper.startsWith("CHAR") || upper.startsWith("LVCHAR")) {
+            int min = args.length > 0 ? args[0] : 1;
+            int max = args.length > 1 ? args[1] : -1;
+            return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_VARCHAR, min, max, 0, 0);
+        }
+        if (upper.startsWith("DECIMAL") || upper.startsWith("NUMERIC")) {
+            int precision = args.length > 0 ? args[0] : 10;
+            int scale = args.length > 1 ? args[1] : 0;
+            return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_DECIMAL, 0, 0, precision, scale);
+        }
+        if (upper.startsWith("TIMESTAMP")) {
+            return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_TIMESTAMP, 0, 0, 0, 0);
+        }
+        // Match on the base type so trailing constraints such as NOT NULL are ignored
+        String baseType = upper.trim().split("[\\s(]")[0];
+        switch (baseType) {
+            case "INT":
+                return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_INT, 0, 0, 0, 0);
+            case "BIGINT":
+                return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_BIGINT, 0, 0, 0, 0);
+            case "FLOAT":
+                return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_FLOAT, 0, 0, 0, 0);
+            case "DOUBLE":
+                return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_DOUBLE, 0, 0, 0, 0);
+            case "BOOLEAN":
+                return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_BOOLEAN, 0, 0, 0, 0);
+            case "TEXT":
+                return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_TEXT, 500, -1, 0, 0);
+            case "DATE":
+                return new ColumnSpec(name, typeDefinition, SQLGenerator.TYPE_DATE, 0, 0, 0, 0);
+            default:
+                return new ColumnSpec(name, typeDefinition, TYPE_UNKNOWN, 0, 0, 0, 0);
+        }
+    }
+
+    // Parses the space-separated numbers between the first pair of parentheses, e.g. "(10 2)"
+    private static int[] parseArguments(String typeDefinition) {
+        int open = typeDefinition.indexOf('(');
+        int close = typeDefinition.indexOf(')', open + 1);
+        if (open < 0 || close < 0) {
+            return new int[0];
+        }
+        String[] parts = typeDefinition.substring(open + 1, close).trim().split("\\s+");
+        int[] args = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            args[i] = Integer.parseInt(parts[i]);
+        }
+        return args;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getTypeDefinition() {
+        return typeDefinition;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    // Whether this is the "id" column that RC tests drive explicitly
+    public boolean isId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + typeDefinition;
+    }
+}
@@ -0,0 +1,236 @@
+package test;
+
+import config.ConfigParser;
+import db.DatabaseConnection;
+import db.StatementPreparer;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import util.Logger;
+import util.RandomSource;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bulk load phase that prefills a test case's table before its clients start. The key space the workload
+ * draws ids from, [0, max_random), is split into disjoint ranges [lo, hi), one per parallel loader thread.
+ * Each loader writes its share of the rows with ids cycling through its own range, so every key gets the
+ * same number of rows and no two loaders write the same key. The other columns are random. Rows are sent
+ * as JDBC batches, multi-row VALUES or PostgreSQL COPY. Loading is kept out of the workload TPS/QPS
+ * counters and latency histograms.
+ */
+public class DataLoader {
+    /** How rows are sent to the database. */
+    public enum Method {
+        AUTO,     // COPY on PostgreSQL, multi-row VALUES elsewhere
+        BATCH,    // PreparedStatement batches
+        MULTIROW, // INSERT ... VALUES (...), (...), ...
+        COPY;     // PostgreSQL COPY FROM STDIN in CSV format
+
+        public static Method parse(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return AUTO;
+            }
+            return valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private final TestCase testCase;
+    private final ConfigParser configParser;
+
+    public DataLoader(TestCase testCase, ConfigParser configParser) {
+        this.testCase = testCase;
+        this.configParser = configParser;
+    }
+
+    /**
+     * Number of rows the load phase inserts. By default RR test cases load as many rows as the
+     * old per-thread prefill did (max_random * 5 per client); RC test cases start empty because
+     * their key model tracks every row.
+     *
+     * @param testCase The test case.
+     * @return The number of rows to load.
+     */
+    public static long effectiveRows(TestCase testCase) {
+        if (testCase.getIsolationLevel().equals("READ_COMMITTED")) {
+            return 0;
+        }
+        if (testCase.getLoadRows() >= 0) {
+            return testCase.getLoadRows();
+        }
+        return (long) testCase.getMaxRandom() * 5 * testCase.getThreadCount();
+    }
+
+    /**
+     * Loads the table and reports the load rate.
+     *
+     * @return The number of rows loaded.
+     */
+    public long load() throws SQLException {
+        if (testCase.getIsolationLevel().equals("READ_COMMITTED") && testCase.getLoadRows() > 0) {
+            System.out.println("Test case: " + testCase.getTestCaseName() + ", load_rows ignored, RC tables start empty");
+        }
+        long rows = effectiveRows(testCase);
+        if (rows <= 0) {
+            return 0;
+        }
+        // Loaders split the key space; each gets the rows in proportion to its range
+        long keySpace = Math.max(1, testCase.getMaxRandom());
+        int threads = (int) Math.max(1, Math.min(testCase.getLoadThreads(), Math.min(rows, keySpace)));
+
+        long start = System.nanoTime();
+        ExecutorService loaders = Executors.newFixedThreadPool(threads);
+        List<Future<Method>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                final int loader = i;
+                final int lo = (int) (keySpace * i / threads);
+                final int hi = (int) (keySpace * (i + 1) / threads);
+                final long count = rows * hi / keySpace - rows * lo / keySpace;
+                results.add(loaders.submit(() -> loadRange(loader, new KeyRange(lo, hi), count)));
+            }
+            Method used = Method.AUTO;
+            for (Future<Method> result : results) {
+                used = result.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            String report = String.format("Test case: %s, loaded %d rows in %.1f s (%.0f rows/s, method %s, %d threads)",
+                    testCase.getTestCaseName(), rows, seconds, rows / Math.max(seconds, 1e-9), used, threads);
+            System.out.println(report);
+            Logger.log(report);
+            return rows;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading " + testCase.getTableName(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Loading " + testCase.getTableName() + " failed", e.getCause());
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    // Ids of one loader: [lo, hi) of the key space, repeated in order until the loader's rows are written
+    private static class KeyRange {
+        final int lo;
+        final int width;
+        int next;
+
+        KeyRange(int lo, int hi) {
+            this.lo = lo;
+            this.width = hi - lo;
+        }
+
+        int nextId() {
+            int id = lo + next;
+            next = next + 1 == width ? 0 : next + 1;
+            return id;
+        }
+    }
+
+    // Loads one loader's share of the rows on its own connection, committing every batch
+    private Method loadRange(int loader, KeyRange keys, long rows) throws SQLException {
+        SQLGenerator sql_g = new SQLGenerator(testCase,
+                RandomSource.forWorker(configParser.getSeed(), testCase.getTestCaseName() + ":load", loader));
+        int batchSize = Math.max(1, testCase.getLoadBatchSize());
+        try (DatabaseConnection dbConnection = new DatabaseConnection(configParser, 1)) {
+            Connection connection = dbConnection.getConnection();
+            connection.setAutoCommit(false);
+            Method method = resolve(connection);
+            switch (method) {
+                case COPY:
+                    copyRows(connection, sql_g, keys, rows, batchSize);
+                    break;
+                case BATCH:
+                    batchRows(connection, sql_g, keys, rows, batchSize);
+                    break;
+                default:
+                    multiRowInsert(connection, sql_g, keys, rows, batchSize);
+                    break;
+            }
+            connection.setAutoCommit(true);
+            return method;
+        }
+    }
+
+    private Method resolve(Connection connection) throws SQLException {
+        boolean postgres = connection.isWrapperFor(PGConnection.class);
+        Method method = testCase.getLoadMethod();
+        if (method == Method.AUTO) {
+            return postgres ? Method.COPY : Method.MULTIROW;
+        }
+        if (method == Method.COPY && !postgres) {
+            throw new SQLException("load_method=copy requires PostgreSQL, test case: " + testCase.getTestCaseName());
+        }
+        return method;
+    }
+
+    private void batchRows(Connection connection, SQLGenerator sql_g, KeyRange keys, long rows, int batchSize) throws SQLException {
+        ColumnSpec[] specs = testCase.getColumnSpecs();
+        try (PreparedStatement statement = StatementPreparer.prepare(connection, sql_g.generatePreparedInsertStatement(), false)) {
+            for (long done = 0; done < rows; ) {
+                int n = (int) Math.min(batchSize, rows - done);
+                for (int row = 0; row < n; row++) {
+                    int id = keys.nextId();
+                    for (int i = 0; i < specs.length; i++) {
+                        sql_g.bindRowValue(statement, i + 1, specs[i], id);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+                done += n;
+            }
+        }
+    }
+
+    private void multiRowInsert(Connection connection, SQLGenerator sql_g, KeyRange keys, long rows, int batchSize) throws SQLException {
+        int[] ids = new int[batchSize];
+        try (Statement statement = connection.createStatement()) {
+            for (long done = 0; done < rows; ) {
+                int n = (int) Math.min(batchSize, rows - done);
+                for (int row = 0; row < n; row++) {
+                    ids[row] = keys.nextId();
+                }
+                statement.executeUpdate(sql_g.generateMultiRowInsertStatement(ids, n));
+                connection.commit();
+                done += n;
+            }
+        }
+    }
+
+    // Streams the rows through one COPY per loader, generating CSV a batch at a time
+    private void copyRows(Connection connection, SQLGenerator sql_g, KeyRange keys, long rows, int batchSize) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql_g.generateCopyStatement());
+        try {
+            StringBuilder csv = new StringBuilder(batchSize * 64);
+            for (long done = 0; done < rows; ) {
+                int n = (int) Math.min(batchSize, rows - done);
+                csv.setLength(0);
+                for (int row = 0; row < n; row++) {
+                    sql_g.appendCsvRow(csv, keys.nextId());
+                }
+                byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                done += n;
+            }
+            copyIn.endCopy();
+            connection.commit();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+}
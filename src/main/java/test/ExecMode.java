@@ -0,0 +1,24 @@
+package test;
+
+/**
+ * How a test case sends its DML to the database.
+ */
+public enum ExecMode {
+    LITERAL,        // Literal SQL text through a fresh Statement, parsed by the server every time
+    PREPARED,       // PreparedStatement prepared once per connection, client-side where the driver supports it
+    SERVER_PREPARED, // PreparedStatement prepared once per connection as a named server-side statement
+    BATCHED;        // Literal SQL of a transaction's write set sent as one JDBC batch, see WriteBatch
+
+    /**
+     * Parses the exec_mode setting, defaulting to LITERAL when it is not set.
+     *
+     * @param value The configured value, e.g. "server_prepared".
+     * @return The execution mode.
+     */
+    public static ExecMode parse(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return LITERAL;
+        }
+        return valueOf(value.trim().toUpperCase());
+    }
+}
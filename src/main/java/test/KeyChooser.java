@@ -0,0 +1,239 @@
+package test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the keys that statements target, from [0, n). Choosers are built once per test case and shared by its
+ * clients; every draw uses the caller's random stream and allocates nothing.
+ */
+public abstract class KeyChooser {
+    // Above this many keys the zeta constant is extended with its integral instead of summed term by term
+    private static final int EXACT_ZETA_LIMIT = 10_000_000;
+
+    protected final int n;
+
+    protected KeyChooser(int n) {
+        this.n = n;
+    }
+
+    /**
+     * Parses the key_distribution setting.
+     *
+     * @param spec "uniform", "zipfian[:theta]", "hotspot[:opFraction:keyFraction]" or "latest[:theta]"; null for uniform.
+     * @param n    Number of keys.
+     */
+    public static KeyChooser parse(String spec, int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("key_distribution: max_random must be positive, got " + n);
+        }
+        if (spec == null || spec.trim().isEmpty()) {
+            return new Uniform(n);
+        }
+        String[] parts = spec.trim().split(":");
+        try {
+            switch (parts[0].trim().toLowerCase()) {
+                case "uniform":
+                    return new Uniform(n);
+                case "zipfian":
+                    return new ScrambledZipfian(n, parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 0.99);
+                case "hotspot":
+                    return new Hotspot(n, parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 0.8,
+                            parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 0.2);
+                case "latest":
+                    return new Latest(new Zipfian(n, parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 0.99));
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("key_distribution: invalid number in " + spec, e);
+        }
+        throw new IllegalArgumentException("key_distribution: expected uniform, zipfian[:theta], hotspot[:ops:keys] or latest[:theta], got " + spec);
+    }
+
+    /** Returns the key for a statement on an existing row. */
+    public abstract int next(SplittableRandom random);
+
+    /** Returns the key for an inserted row; the same distribution as next() unless the chooser follows inserts. */
+    public int nextInsertKey(SplittableRandom random) {
+        return next(random);
+    }
+
+    /**
+     * Returns the chooser for one client whose keys are private to it (an RC partition). Stateless choosers are
+     * shared; choosers that follow inserts get their own state.
+     */
+    public KeyChooser forClient() {
+        return this;
+    }
+
+    public boolean isUniform() {
+        return false;
+    }
+
+    /** Short label for reports, e.g. "zipfian(0.99)". */
+    public abstract String getName();
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    private static class Uniform extends KeyChooser {
+        Uniform(int n) {
+            super(n);
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            return random.nextInt(n);
+        }
+
+        @Override
+        public boolean isUniform() {
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return "uniform";
+        }
+    }
+
+    /**
+     * Zipfian ranks in [0, n), rank 0 the most popular (Gray et al., "Quickly generating billion-record synthetic
+     * databases"), with the constants computed once.
+     */
+    static class Zipfian {
+        final int n;
+        final double theta;
+        private final double alpha;
+        private final double zetan;
+        private final double eta;
+        private final double halfPowTheta;
+
+        Zipfian(int n, double theta) {
+            if (!(theta > 0 && theta < 1)) {
+                throw new IllegalArgumentException("key_distribution: theta must be in (0, 1), got " + theta);
+            }
+            this.n = n;
+            this.theta = theta;
+            this.alpha = 1 / (1 - theta);
+            this.zetan = zeta(n, theta);
+            double zeta2 = zeta(2, theta);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetan);
+            this.halfPowTheta = Math.pow(0.5, theta);
+        }
+
+        int next(SplittableRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + halfPowTheta) {
+                return n > 1 ? 1 : 0;
+            }
+            int rank = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+            return rank < n ? rank : n - 1;
+        }
+
+        // Sum of 1 / i^theta for i in [1, n]; the tail past EXACT_ZETA_LIMIT uses the midpoint integral
+        private static double zeta(int n, double theta) {
+            int exact = Math.min(n, EXACT_ZETA_LIMIT);
+            double sum = 0;
+            for (int i = 1; i <= exact; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            if (n > exact) {
+                sum += (Math.pow(n + 0.5, 1 - theta) - Math.pow(exact + 0.5, 1 - theta)) / (1 - theta);
+            }
+            return sum;
+        }
+    }
+
+    // Zipfian ranks spread over the key space, so the hot keys are not adjacent (and not in the same index pages)
+    private static class ScrambledZipfian extends KeyChooser {
+        private final Zipfian zipfian;
+
+        ScrambledZipfian(int n, double theta) {
+            super(n);
+            this.zipfian = new Zipfian(n, theta);
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            long hash = zipfian.next(random) * 0x9e3779b97f4a7c15L;
+            hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+            hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+            return (int) Long.remainderUnsigned(hash ^ (hash >>> 31), n);
+        }
+
+        @Override
+        public String getName() {
+            return "zipfian(" + zipfian.theta + ")";
+        }
+    }
+
+    // opFraction of the draws land on the first keyFraction of the keys, the rest on the other keys
+    private static class Hotspot extends KeyChooser {
+        private final double opFraction;
+        private final double keyFraction;
+        private final int hotKeys;
+
+        Hotspot(int n, double opFraction, double keyFraction) {
+            super(n);
+            if (opFraction < 0 || opFraction > 1 || keyFraction <= 0 || keyFraction > 1) {
+                throw new IllegalArgumentException("key_distribution: hotspot fractions must be in [0, 1] and (0, 1]");
+            }
+            this.opFraction = opFraction;
+            this.keyFraction = keyFraction;
+            this.hotKeys = Math.max(1, (int) (n * keyFraction));
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            if (hotKeys == n || random.nextDouble() < opFraction) {
+                return random.nextInt(hotKeys);
+            }
+            return hotKeys + random.nextInt(n - hotKeys);
+        }
+
+        @Override
+        public String getName() {
+            return "hotspot(" + opFraction + "/" + keyFraction + ")";
+        }
+    }
+
+    // Inserts take the next key in sequence; other statements favour the most recently inserted keys
+    private static class Latest extends KeyChooser {
+        private final Zipfian zipfian;
+        private final AtomicLong lastInserted;
+
+        Latest(Zipfian zipfian) {
+            super(zipfian.n);
+            this.zipfian = zipfian;
+            this.lastInserted = new AtomicLong(zipfian.n - 1); // Treat the loaded keys as inserted in order
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            return (int) Math.floorMod(lastInserted.get() - zipfian.next(random), (long) n);
+        }
+
+        @Override
+        public int nextInsertKey(SplittableRandom random) {
+            return (int) Math.floorMod(lastInserted.incrementAndGet(), (long) n);
+        }
+
+        @Override
+        public KeyChooser forClient() {
+            return new Latest(zipfian);
+        }
+
+        @Override
+        public String getName() {
+            return "latest(" + zipfian.theta + ")";
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Key-state model of one READ_COMMITTED client partition [base, base + size), built on primitive arrays.
+ * Committed, pending-insert and pending-delete state live in bitsets; a permutation of the keys split into
+ * three regions (present and free, absent and free, checked out by the open transaction) gives O(1) random
+ * picks and returns. Nothing is allocated per operation, so partitions can hold millions of keys.
+ * The changes of the last commits are kept in reusable arrays, so a read from a lagging replica can be
+ * matched against the earlier committed states.
+ */
+public class KeyStateModel {
+    private static final int HISTORY = 64; // Commits that a lagging replica read can trail
+    private final int base;
+    private final int size;
+    private final long[] committed;
+    private final long[] pendingInsert;
+    private final long[] pendingDelete;
+    private final int[] keys; // [0, present) present, [present, present + absent) absent, rest checked out
+    private final int[] positions; // Offset of each key in keys
+    private int present;
+    private int absent;
+    private int[] touched = new int[32]; // Keys touched by the open (or last finished) transaction
+    private int touchedCount;
+    // Keys changed by the last commits, key * 2 + 1 for an insert and key * 2 for a delete; newest at historyHead - 1
+    private final int[][] history = new int[HISTORY][];
+    private final int[] historyCounts = new int[HISTORY];
+    private int historyHead;
+    private int historySize;
+
+    /**
+     * Creates a model with every key absent, matching the empty RC table.
+     */
+    public KeyStateModel(int base, int size) {
+        this.base = base;
+        this.size = size;
+        int words = (size + 63) >>> 6;
+        this.committed = new long[words];
+        this.pendingInsert = new long[words];
+        this.pendingDelete = new long[words];
+        this.keys = new int[size];
+        this.positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+            positions[i] = i;
+        }
+        this.absent = size;
+    }
+
+    public int getBase() {
+        return base;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean hasPresent() {
+        return present > 0;
+    }
+
+    public boolean hasAbsent() {
+        return absent > 0;
+    }
+
+    public int getTouchedCount() {
+        return touchedCount;
+    }
+
+    /** Starts a transaction, forgetting the keys touched by the previous one. */
+    public void begin() {
+        touchedCount = 0;
+    }
+
+    /**
+     * Checks out a random committed key that the open transaction has not touched.
+     *
+     * @return The id, or -1 if none is left.
+     */
+    public int takePresent(SplittableRandom random) {
+        if (present == 0) {
+            return -1;
+        }
+        return checkOutPresent(keys[random.nextInt(present)]);
+    }
+
+    /**
+     * Checks out the given key if it is committed and the open transaction has not touched it.
+     *
+     * @param key Offset of the key in the partition.
+     * @return The id, or -1 if the key is absent or checked out.
+     */
+    public int takePresent(int key) {
+        return positions[key] < present ? checkOutPresent(key) : -1;
+    }
+
+    /**
+     * Checks out a random absent key that the open transaction has not touched.
+     *
+     * @return The id, or -1 if none is left.
+     */
+    public int takeAbsent(SplittableRandom random) {
+        if (absent == 0) {
+            return -1;
+        }
+        return checkOutAbsent(keys[present + random.nextInt(absent)]);
+    }
+
+    /**
+     * Checks out the given key if it is absent and the open transaction has not touched it.
+     *
+     * @param key Offset of the key in the partition.
+     * @return The id, or -1 if the key is present or checked out.
+     */
+    public int takeAbsent(int key) {
+        int position = positions[key];
+        return position >= present && position < present + absent ? checkOutAbsent(key) : -1;
+    }
+
+    private int checkOutPresent(int key) {
+        // Move it to the end of the present region, then swap it past the absent region
+        swap(positions[key], present - 1);
+        swap(present - 1, present + absent - 1);
+        present--;
+        return base + key;
+    }
+
+    private int checkOutAbsent(int key) {
+        swap(positions[key], present + absent - 1);
+        absent--;
+        return base + key;
+    }
+
+    /** Records that a checked-out key was inserted by the open transaction. */
+    public void markInserted(int id) {
+        markPending(pendingInsert, id - base);
+    }
+
+    /** Records that a checked-out key was deleted by the open transaction. */
+    public void markDeleted(int id) {
+        markPending(pendingDelete, id - base);
+    }
+
+    /** Returns a checked-out key whose statement failed to the free regions, unchanged. */
+    public void release(int id) {
+        checkIn(id - base, get(committed, id - base));
+    }
+
+    /** Applies the pending changes to the committed state and frees the touched keys. */
+    public void commit() {
+        int[] changes = history[historyHead];
+        if (changes == null || changes.length < touchedCount) {
+            changes = history[historyHead] = new int[Math.max(touched.length, 32)];
+        }
+        int count = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int key = touched[i];
+            if (get(pendingInsert, key)) {
+                set(committed, key);
+                changes[count++] = key * 2 + 1;
+            } else if (get(pendingDelete, key)) {
+                clear(committed, key);
+                changes[count++] = key * 2;
+            }
+        }
+        historyCounts[historyHead] = count;
+        historyHead = (historyHead + 1) % HISTORY;
+        historySize = Math.min(historySize + 1, HISTORY);
+        rollback();
+    }
+
+    /** Discards the pending changes and frees the touched keys, which stay listed until begin(). */
+    public void rollback() {
+        for (int i = 0; i < touchedCount; i++) {
+            int key = touched[i];
+            clear(pendingInsert, key);
+            clear(pendingDelete, key);
+            checkIn(key, get(committed, key));
+        }
+    }
+
+    /** Sorts the touched keys for nextVisibleTouched(); call from the owning thread before sharing the model. */
+    public void sortTouched() {
+        Arrays.sort(touched, 0, touchedCount);
+    }
+
+    /**
+     * Returns the smallest id &gt;= fromId expected to be visible, or -1. The own view of the open transaction
+     * includes its pending changes; every other session sees the committed state only.
+     */
+    public int nextVisible(int fromId, boolean ownView) {
+        int key = Math.max(fromId - base, 0);
+        if (key >= size) {
+            return -1;
+        }
+        int w = key >>> 6;
+        long word = visibleWord(w, ownView) & (-1L << key);
+        while (word == 0) {
+            if (++w == committed.length) {
+                return -1;
+            }
+            word = visibleWord(w, ownView);
+        }
+        key = (w << 6) + Long.numberOfTrailingZeros(word);
+        return key < size ? base + key : -1;
+    }
+
+    /**
+     * Like nextVisible(), limited to the keys touched by the current or last transaction (after sortTouched()).
+     */
+    public int nextVisibleTouched(int fromId, boolean ownView) {
+        int i = Arrays.binarySearch(touched, 0, touchedCount, fromId - base);
+        for (i = i < 0 ? -i - 1 : i; i < touchedCount; i++) {
+            int key = touched[i];
+            if (isVisible(key, ownView)) {
+                return base + key;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the ids read match the committed state as it was before one of the last commits, as a replica
+     * that has not applied them would show it. With touchedOnly only the touched keys are compared, matching
+     * the IN-list check. The current committed state is not among them; compare with nextVisible() for that.
+     * Allocates, so only call it for reads that did not match the current state.
+     *
+     * @param ids         The ids read, in ascending order.
+     * @param count       Number of ids.
+     * @param touchedOnly Whether the read covered the touched keys only instead of the whole partition.
+     */
+    public boolean matchesEarlierState(int[] ids, int count, boolean touchedOnly) {
+        long[] read = new long[committed.length];
+        for (int i = 0; i < count; i++) {
+            int key = ids[i] - base;
+            // Ids outside the partition or read twice never match a committed state
+            if (key < 0 || key >= size || (i > 0 && ids[i] <= ids[i - 1])) {
+                return false;
+            }
+            set(read, key);
+        }
+        long[] state = committed.clone();
+        for (int back = 1; back <= historySize; back++) {
+            // Undo the commits from the newest one backwards
+            int slot = (historyHead - back + HISTORY) % HISTORY;
+            int[] changes = history[slot];
+            for (int i = 0; i < historyCounts[slot]; i++) {
+                if ((changes[i] & 1) != 0) {
+                    clear(state, changes[i] >>> 1);
+                } else {
+                    set(state, changes[i] >>> 1);
+                }
+            }
+            if (touchedOnly ? sameAtTouched(state, read) : Arrays.equals(state, read)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean sameAtTouched(long[] state, long[] read) {
+        for (int i = 0; i < touchedCount; i++) {
+            if (get(state, touched[i]) != get(read, touched[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the touched ids as a comma-separated list, for IN-list queries.
+     */
+    public void appendTouched(StringBuilder sb) {
+        for (int i = 0; i < touchedCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(base + touched[i]);
+        }
+    }
+
+    /** Touched keys with their pending change (+ insert, - delete), for error reports. */
+    public String describeTouched() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < touchedCount; i++) {
+            int key = touched[i];
+            if (i > 0) {
+                text.append(", ");
+            }
+            if (get(pendingInsert, key)) {
+                text.append('+');
+            } else if (get(pendingDelete, key)) {
+                text.append('-');
+            }
+            text.append(base + key);
+        }
+        return text.append(']').toString();
+    }
+
+    private boolean isVisible(int key, boolean ownView) {
+        boolean visible = get(committed, key);
+        if (ownView) {
+            visible = (visible || get(pendingInsert, key)) && !get(pendingDelete, key);
+        }
+        return visible;
+    }
+
+    private long visibleWord(int w, boolean ownView) {
+        return ownView ? (committed[w] | pendingInsert[w]) & ~pendingDelete[w] : committed[w];
+    }
+
+    private void markPending(long[] bits, int key) {
+        set(bits, key);
+        if (touchedCount == touched.length) {
+            int[] grown = new int[touched.length * 2];
+            System.arraycopy(touched, 0, grown, 0, touchedCount);
+            touched = grown;
+        }
+        touched[touchedCount++] = key;
+    }
+
+    // Moves a checked-out key back into the present or absent region
+    private void checkIn(int key, boolean isPresent) {
+        swap(positions[key], present + absent);
+        if (isPresent) {
+            swap(present + absent, present);
+            present++;
+        } else {
+            absent++;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = keys[i];
+        int b = keys[j];
+        keys[i] = b;
+        keys[j] = a;
+        positions[b] = i;
+        positions[a] = j;
+    }
+
+    private static boolean get(long[] bits, int key) {
+        return (bits[key >>> 6] & (1L << key)) != 0;
+    }
+
+    private static void set(long[] bits, int key) {
+        bits[key >>> 6] |= 1L << key;
+    }
+
+    private static void clear(long[] bits, int key) {
+        bits[key >>> 6] &= ~(1L << key);
+    }
+}
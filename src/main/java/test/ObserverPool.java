@@ -0,0 +1,184 @@
+package test;
+
+import config.ConfigParser;
+import db.ConnectionGate;
+import db.DatabaseConnection;
+import util.ClientThreads;
+import util.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived observer sessions for READ_COMMITTED visibility checks. Each database gets a fixed set of
+ * session threads, each pinned to its own connection with the isolation level already set, that take
+ * checks from a shared queue. Clients submit a check with a fan-out and wait for all observers, so the
+ * measured time is the database reads rather than thread creation and pool checkout. With virtual-thread
+ * clients the sessions check a connection out per check instead, from the share of the pool reserved
+ * outside the connection gate.
+ */
+public class ObserverPool implements AutoCloseable {
+
+    /** A check run by one observer on its pinned connection to database dbIndex. */
+    public interface Check {
+        void run(Connection connection, int dbIndex);
+    }
+
+    private final String name;
+    private final ConfigParser configParser;
+    private final int isolationLevel;
+    private final boolean perCheck = ConnectionGate.isEnabled(); // Connection per check instead of pinned
+    // A submitted check, the latch its submitter waits on and the count of observers that could not run it
+    private static class Pending {
+        final Check check;
+        final CountDownLatch done;
+        final AtomicInteger skipped;
+
+        Pending(Check check, CountDownLatch done, AtomicInteger skipped) {
+            this.check = check;
+            this.done = done;
+            this.skipped = skipped;
+        }
+    }
+
+    private final List<BlockingQueue<Pending>> queues = new ArrayList<>(); // Index 0 is database1
+    private final List<Thread> sessions = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * Opens the sessions on every configured database.
+     *
+     * @param testCase       The READ_COMMITTED test case.
+     * @param configParser   Database configuration.
+     * @param isolationLevel JDBC isolation level for the sessions.
+     */
+    public ObserverPool(TestCase testCase, ConfigParser configParser, int isolationLevel) throws SQLException {
+        this.name = testCase.getTestCaseName();
+        this.configParser = configParser;
+        this.isolationLevel = isolationLevel;
+        int perDatabase = testCase.getObserverSessions();
+        for (int db = 1; db <= configParser.getDatabaseIndex(); db++) {
+            BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+            queues.add(queue);
+            for (int i = 0; i < perDatabase; i++) {
+                // Pinned sessions connect up front so isolation setup is not part of the first checks
+                DatabaseConnection session = perCheck ? null : openSession(db);
+                final int dbIndex = db;
+                sessions.add(ClientThreads.start(name + "-observer-db" + db + "-" + i,
+                        () -> serve(dbIndex, session, queue)));
+            }
+        }
+    }
+
+    /**
+     * Runs the check on fanout observers, each on a randomly chosen database, and waits for all of them.
+     *
+     * @return The number of observers that could not run the check, e.g. because their session failed; their
+     *         visibility was not verified.
+     */
+    public int check(Check check, int fanout, SplittableRandom random) {
+        if (fanout <= 0) {
+            return 0;
+        }
+        if (closed) {
+            return fanout;
+        }
+        CountDownLatch done = new CountDownLatch(fanout);
+        AtomicInteger skipped = new AtomicInteger();
+        for (int i = 0; i < fanout; i++) {
+            queues.get(random.nextInt(queues.size())).add(new Pending(check, done, skipped));
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Checks still queued or running are not waited for
+            return (int) done.getCount() + skipped.get();
+        }
+        return skipped.get();
+    }
+
+    private DatabaseConnection openSession(int dbIndex) throws SQLException {
+        DatabaseConnection session = new DatabaseConnection(configParser, dbIndex, false);
+        try {
+            Connection connection = session.getConnection();
+            connection.setTransactionIsolation(isolationLevel);
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            session.close();
+            throw e;
+        }
+        return session;
+    }
+
+    // Session loop: runs queued checks on the session's connection, ending each read transaction afterwards
+    private void serve(int dbIndex, DatabaseConnection session, BlockingQueue<Pending> queue) {
+        try {
+            while (!closed) {
+                Pending pending = queue.take();
+                boolean ran = false;
+                try {
+                    if (session == null) {
+                        session = openSession(dbIndex);
+                    }
+                    pending.check.run(session.getConnection(), dbIndex);
+                    ran = true;
+                    session.getConnection().rollback();
+                    if (perCheck) {
+                        session.close();
+                        session = null;
+                    }
+                } catch (SQLException e) {
+                    // Drop the broken session; the next check reconnects
+                    Logger.logRateLimited(name + ":observer-session",
+                            "Test case: %s, observer session on database%d failed: %s", name, dbIndex, e);
+                    if (session != null) {
+                        session.close();
+                        session = null;
+                    }
+                } catch (RuntimeException e) {
+                    // Keep serving; the failed check is reported to its client as skipped
+                    Logger.logRateLimited(name + ":observer-check",
+                            "Test case: %s, observer check on database%d failed: %s", name, dbIndex, e);
+                } finally {
+                    if (!ran) {
+                        pending.skipped.incrementAndGet();
+                    }
+                    pending.done.countDown();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Stops the session threads and returns their connections to the pools.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread session : sessions) {
+            session.interrupt();
+        }
+        // Release clients still waiting on checks nobody will run
+        for (BlockingQueue<Pending> queue : queues) {
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                pending.skipped.incrementAndGet();
+                pending.done.countDown();
+            }
+        }
+    }
+}
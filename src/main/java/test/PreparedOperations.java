@@ -0,0 +1,244 @@
+package test;
+
+import db.StatementPreparer;
+import util.ControlledFileWriter;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The DML statements of one test case, prepared once on a worker's connection and reused for
+ * every transaction. Values are bound with their JDBC types straight from the generator.
+ * Statements are prepared lazily so RR workers never prepare the RC statements and vice versa.
+ * With SQL logging on, each execution is traced before it runs as the statement text with its bound
+ * values substituted, so traces from the prepared modes read and replay like literal-mode traces.
+ */
+public class PreparedOperations implements AutoCloseable {
+    private final Connection connection;
+    private final TestCase testCase;
+    private final SQLGenerator sqlGenerator;
+    private final boolean serverSide;
+    private final ColumnSpec[] columns;
+    private final ControlledFileWriter trace; // null when SQL logging is off
+    private final Map<PreparedStatement, String> sqlText = new IdentityHashMap<>(); // Only kept while tracing
+    private final String[] literals; // Bound values of the statement being traced, by parameter index - 1
+    private final StringBuilder literal = new StringBuilder();
+
+    private PreparedStatement insert;
+    private PreparedStatement delete;
+    private PreparedStatement update;
+    private PreparedStatement select;
+    private PreparedStatement insertWithId;
+    private PreparedStatement deleteWithId;
+    private PreparedStatement updateWithId;
+    private PreparedStatement selectWithId;
+
+    public PreparedOperations(Connection connection, TestCase testCase, SQLGenerator sqlGenerator, ControlledFileWriter trace) {
+        this.connection = connection;
+        this.testCase = testCase;
+        this.sqlGenerator = sqlGenerator;
+        this.serverSide = testCase.getExecMode() == ExecMode.SERVER_PREPARED;
+        this.columns = testCase.getColumnSpecs();
+        this.trace = trace != null && trace.isEnabled() ? trace : null;
+        this.literals = new String[columns.length + 1];
+    }
+
+    /**
+     * Creates the prepared operations for a worker, or returns null in literal and batched mode.
+     *
+     * @param trace The worker's SQL trace, or null for none.
+     */
+    public static PreparedOperations forMode(Connection connection, TestCase testCase, SQLGenerator sqlGenerator,
+            ControlledFileWriter trace) {
+        if (testCase.getExecMode() == ExecMode.LITERAL || testCase.getExecMode() == ExecMode.BATCHED) {
+            return null;
+        }
+        return new PreparedOperations(connection, testCase, sqlGenerator, trace);
+    }
+
+    // Inserts a row with a key from the key distribution and random values in the other columns
+    public int executeInsert() throws SQLException {
+        if (insert == null) {
+            insert = prepare(sqlGenerator.generatePreparedInsertStatement());
+        }
+        bindKey(insert, 1, true);
+        for (int i = 1; i < columns.length; i++) {
+            bindRandom(insert, i + 1, columns[i]);
+        }
+        trace(insert);
+        return insert.executeUpdate();
+    }
+
+    // Deletes rows matching a primary key value from the key distribution
+    public int executeDelete() throws SQLException {
+        if (delete == null) {
+            delete = prepare(sqlGenerator.generatePreparedDeleteStatement());
+        }
+        bindKey(delete, 1, false);
+        trace(delete);
+        return delete.executeUpdate();
+    }
+
+    // Updates the non-key columns of rows matching a primary key value from the key distribution
+    public int executeUpdate() throws SQLException {
+        if (update == null) {
+            update = prepare(sqlGenerator.generatePreparedUpdateStatement());
+        }
+        int index = 1;
+        for (int i = 1; i < columns.length; i++) {
+            bindRandom(update, index++, columns[i]);
+        }
+        bindKey(update, index, false);
+        trace(update);
+        return update.executeUpdate();
+    }
+
+    // Reads the rows matching a primary key value from the key distribution, returns the number of rows
+    public int executeSelect() throws SQLException {
+        if (select == null) {
+            select = prepare(sqlGenerator.generatePreparedSelectStatement());
+        }
+        bindKey(select, 1, false);
+        trace(select);
+        return countRows(select);
+    }
+
+    // Inserts a row with the given id and random values in the other columns
+    public int executeInsertWithId(int id) throws SQLException {
+        if (insertWithId == null) {
+            insertWithId = prepare(sqlGenerator.generatePreparedInsertStatementWithId());
+        }
+        bindWithId(insertWithId, id);
+        trace(insertWithId);
+        return insertWithId.executeUpdate();
+    }
+
+    // Deletes the row with the given id
+    public int executeDeleteWithId(int id) throws SQLException {
+        if (deleteWithId == null) {
+            deleteWithId = prepare(sqlGenerator.generatePreparedDeleteStatementWithId());
+        }
+        bindInt(deleteWithId, 1, id);
+        trace(deleteWithId);
+        return deleteWithId.executeUpdate();
+    }
+
+    // Moves the row with oldId to newId and gives the other columns random values
+    public int executeUpdateWithId(int oldId, int newId) throws SQLException {
+        if (updateWithId == null) {
+            updateWithId = prepare(sqlGenerator.generatePreparedUpdateStatementWithId());
+        }
+        bindWithId(updateWithId, newId);
+        bindInt(updateWithId, columns.length + 1, oldId);
+        trace(updateWithId);
+        return updateWithId.executeUpdate();
+    }
+
+    // Reads the row with the given id, returns the number of rows
+    public int executeSelectWithId(int id) throws SQLException {
+        if (selectWithId == null) {
+            selectWithId = prepare(sqlGenerator.generatePreparedSelectStatementWithId());
+        }
+        bindInt(selectWithId, 1, id);
+        trace(selectWithId);
+        return countRows(selectWithId);
+    }
+
+    // Runs a query and reads its whole result
+    private static int countRows(PreparedStatement statement) throws SQLException {
+        int rows = 0;
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    // Binds every column in order, using the given value for the id column
+    private void bindWithId(PreparedStatement statement, int id) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].isId()) {
+                bindInt(statement, i + 1, id);
+            } else {
+                bindRandom(statement, i + 1, columns[i]);
+            }
+        }
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = StatementPreparer.prepare(connection, sql, serverSide);
+        if (trace != null) {
+            sqlText.put(statement, sql);
+        }
+        return statement;
+    }
+
+    private void bindRandom(PreparedStatement statement, int index, ColumnSpec spec) throws SQLException {
+        if (trace == null) {
+            sqlGenerator.bindRandomValue(statement, index, spec);
+            return;
+        }
+        literal.setLength(0);
+        sqlGenerator.bindRandomValue(statement, index, spec, literal);
+        literals[index - 1] = literal.toString();
+    }
+
+    private void bindKey(PreparedStatement statement, int index, boolean insert) throws SQLException {
+        if (trace == null) {
+            sqlGenerator.bindKeyValue(statement, index, columns[0], insert, null);
+            return;
+        }
+        literal.setLength(0);
+        sqlGenerator.bindKeyValue(statement, index, columns[0], insert, literal);
+        literals[index - 1] = literal.toString();
+    }
+
+    private void bindInt(PreparedStatement statement, int index, int value) throws SQLException {
+        statement.setInt(index, value);
+        if (trace != null) {
+            literals[index - 1] = Integer.toString(value);
+        }
+    }
+
+    // Traces the statement about to run, with each placeholder replaced by the literal of its bound value
+    private void trace(PreparedStatement statement) {
+        if (trace == null) {
+            return;
+        }
+        String sql = sqlText.get(statement);
+        StringBuilder line = new StringBuilder(sql.length() + 64).append("/* prepared */ ");
+        int parameter = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                line.append(literals[parameter++]);
+            } else {
+                line.append(c);
+            }
+        }
+        try {
+            trace.writeStatement(line.toString());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (PreparedStatement statement : new PreparedStatement[] { insert, delete, update, select, insertWithId, deleteWithId, updateWithId, selectWithId }) {
+            if (statement != null) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package test;
+
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Retry policy for transactions that fail with a serialization failure or deadlock. Attempts are
+ * separated by exponential backoff with full jitter (a random wait up to base * 2^(attempt-1), capped),
+ * so clients that collided do not retry in lockstep.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+
+    /**
+     * @param maxAttempts    Attempts per transaction including the first, at least 1.
+     * @param baseBackoffMs  Backoff ceiling after the first failed attempt.
+     * @param maxBackoffMs   Upper bound of the backoff ceiling.
+     */
+    public RetryPolicy(int maxAttempts, long baseBackoffMs, long maxBackoffMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffNanos = Math.max(0, baseBackoffMs) * 1_000_000L;
+        this.maxBackoffNanos = Math.max(baseBackoffMs, maxBackoffMs) * 1_000_000L;
+    }
+
+    public static RetryPolicy forTestCase(TestCase testCase) {
+        return new RetryPolicy(testCase.getRetryMaxAttempts(), testCase.getRetryBaseBackoffMs(), testCase.getRetryMaxBackoffMs());
+    }
+
+    /**
+     * Serialization failures (40001) and deadlocks (40P01) are safe to retry from the start of the transaction.
+     * A failed JDBC batch may carry the state only on its chained exception.
+     */
+    public static boolean isRetryable(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if ("40001".equals(current.getSQLState()) || "40P01".equals(current.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Parks before the next attempt.
+     *
+     * @param failedAttempts Attempts that have failed so far, starting at 1.
+     */
+    public void backoff(int failedAttempts, SplittableRandom random) {
+        long ceiling = baseBackoffNanos << Math.min(failedAttempts - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffNanos) {
+            ceiling = maxBackoffNanos;
+        }
+        if (ceiling > 0) {
+            LockSupport.parkNanos(random.nextLong(ceiling + 1));
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package test;
+
+import com.mysql.cj.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming verifier for REPEATABLE_READ checks. Each read of the SELECT is fetched with a cursor and
+ * every column of every row is folded into an order-sensitive polynomial digest, so memory stays
+ * constant regardless of table size. Per-chunk digests (a bounded array; chunks double in size when it
+ * fills up) locate the first differing region, and only that region is read again for the diff report.
+ */
+public class RowDigestVerifier {
+    private static final long MULTIPLIER = 0x9e3779b97f4a7c15L; // Odd, so powers never collapse to zero
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int INITIAL_CHUNK_ROWS = 1024;
+    private static final int MAX_CHUNKS = 4096;
+
+    private final int fetchSize;
+    private final int maxRows;
+    private final int diffRows;
+
+    /**
+     * @param fetchSize Rows fetched per round trip.
+     * @param maxRows   Row limit per read, 0 for the whole result.
+     * @param diffRows  Maximum rows shown for a differing region.
+     */
+    public RowDigestVerifier(int fetchSize, int maxRows, int diffRows) {
+        this.fetchSize = fetchSize;
+        this.maxRows = maxRows;
+        this.diffRows = diffRows;
+    }
+
+    /** Digest of one read of the query. */
+    public static class Snapshot {
+        private final long digest;
+        private final long rows;
+        private final long[] chunkDigests; // Includes the final partial chunk
+        private final int chunkCount;
+        private final long chunkRows;
+
+        Snapshot(long digest, long rows, long[] chunkDigests, int chunkCount, long chunkRows) {
+            this.digest = digest;
+            this.rows = rows;
+            this.chunkDigests = chunkDigests;
+            this.chunkCount = chunkCount;
+            this.chunkRows = chunkRows;
+        }
+
+        public long getDigest() {
+            return digest;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+    }
+
+    /** The first region where a later read differs from the first one. */
+    public static class Mismatch {
+        private final long firstRow;
+        private final long lastRow;
+        private final Snapshot expected;
+        private final Snapshot actual;
+        private final List<String> regionRows;
+
+        Mismatch(long firstRow, long lastRow, Snapshot expected, Snapshot actual, List<String> regionRows) {
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+            this.expected = expected;
+            this.actual = actual;
+            this.regionRows = regionRows;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rows %d-%d differ (first read: %d rows, digest %016x; next read: %d rows, digest %016x), next read rows in region: %s",
+                    firstRow, lastRow, expected.rows, expected.digest, actual.rows, actual.digest, regionRows);
+        }
+    }
+
+    /**
+     * Reads the query once and returns its digest.
+     */
+    public Snapshot capture(Connection connection, String sql) throws SQLException {
+        return scan(connection, sql, INITIAL_CHUNK_ROWS, true);
+    }
+
+    /**
+     * Reads the query again and compares it with an earlier snapshot.
+     *
+     * @return null if the reads are identical, otherwise the first differing region.
+     */
+    public Mismatch compare(Connection connection, String sql, Snapshot expected) throws SQLException {
+        Snapshot actual = scan(connection, sql, expected.chunkRows, false);
+        if (actual.digest == expected.digest && actual.rows == expected.rows) {
+            return null;
+        }
+        int chunk = 0;
+        while (chunk < expected.chunkCount && chunk < actual.chunkCount
+                && expected.chunkDigests[chunk] == actual.chunkDigests[chunk]) {
+            chunk++;
+        }
+        long firstRow = chunk * expected.chunkRows;
+        long lastRow = Math.min(firstRow + expected.chunkRows, Math.max(expected.rows, actual.rows)) - 1;
+        return new Mismatch(firstRow, lastRow, expected, actual, readRegion(connection, sql, firstRow, lastRow));
+    }
+
+    // Streams the result, folding rows into the total digest and the per-chunk digests
+    private Snapshot scan(Connection connection, String sql, long chunkRows, boolean adaptive) throws SQLException {
+        long[] chunks = new long[MAX_CHUNKS];
+        int chunkCount = 0;
+        long chunkPower = power(chunkRows);
+        long digest = 0;
+        long chunkDigest = 0;
+        long rowsInChunk = 0;
+        long rows = 0;
+        try (Statement statement = createStreamingStatement(connection);
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                long rowHash = hashRow(resultSet, columns);
+                digest = digest * MULTIPLIER + rowHash;
+                chunkDigest = chunkDigest * MULTIPLIER + rowHash;
+                rows++;
+                if (++rowsInChunk == chunkRows) {
+                    // Later reads use the first read's chunk size, so a full array there only means extra rows
+                    if (chunkCount < MAX_CHUNKS) {
+                        chunks[chunkCount++] = chunkDigest;
+                    }
+                    chunkDigest = 0;
+                    rowsInChunk = 0;
+                    if (adaptive && chunkCount == MAX_CHUNKS) {
+                        // Double the chunk size: H(a || b) = H(a) * P^len(b) + H(b)
+                        for (int i = 0; i < MAX_CHUNKS / 2; i++) {
+                            chunks[i] = chunks[2 * i] * chunkPower + chunks[2 * i + 1];
+                        }
+                        chunkCount = MAX_CHUNKS / 2;
+                        chunkRows *= 2;
+                        chunkPower *= chunkPower;
+                    }
+                }
+            }
+        }
+        if (rowsInChunk > 0 && chunkCount < MAX_CHUNKS) {
+            chunks[chunkCount++] = chunkDigest;
+        }
+        return new Snapshot(digest, rows, chunks, chunkCount, chunkRows);
+    }
+
+    // Reads only the rows of the differing region, bounded by diffRows
+    private List<String> readRegion(Connection connection, String sql, long firstRow, long lastRow) throws SQLException {
+        List<String> region = new ArrayList<>();
+        try (Statement statement = createStreamingStatement(connection);
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            int columns = resultSet.getMetaData().getColumnCount();
+            long row = 0;
+            while (resultSet.next() && row <= lastRow && region.size() < diffRows) {
+                if (row >= firstRow) {
+                    StringBuilder text = new StringBuilder("[");
+                    for (int i = 1; i <= columns; i++) {
+                        if (i > 1) {
+                            text.append(", ");
+                        }
+                        text.append(resultSet.getString(i));
+                    }
+                    region.add(text.append(']').toString());
+                }
+                row++;
+            }
+        }
+        return region;
+    }
+
+    // Cursor-based fetching: PostgreSQL uses the fetch size inside a transaction, MySQL streams with MIN_VALUE
+    private Statement createStreamingStatement(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (connection.isWrapperFor(JdbcConnection.class)) {
+            statement.setFetchSize(Integer.MIN_VALUE);
+        } else {
+            statement.setFetchSize(fetchSize);
+        }
+        if (maxRows > 0) {
+            statement.setMaxRows(maxRows);
+        }
+        return statement;
+    }
+
+    // Hashes every column of the current row, with separators and a marker for NULL
+    private static long hashRow(ResultSet resultSet, int columns) throws SQLException {
+        long hash = FNV_OFFSET;
+        for (int i = 1; i <= columns; i++) {
+            String value = resultSet.getString(i);
+            if (value == null) {
+                hash = (hash ^ 0xff) * FNV_PRIME;
+            } else {
+                for (int c = 0; c < value.length(); c++) {
+                    hash = (hash ^ value.charAt(c)) * FNV_PRIME;
+                }
+            }
+            hash = (hash ^ 0x1f) * FNV_PRIME;
+        }
+        // SplitMix64 finaliser so similar rows spread over the whole word
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    // MULTIPLIER^n modulo 2^64
+    private static long power(long n) {
+        long result = 1;
+        long base = MULTIPLIER;
+        while (n > 0) {
+            if ((n & 1) == 1) {
+                result *= base;
+            }
+            base *= base;
+            n >>= 1;
+        }
+        return result;
+    }
+}
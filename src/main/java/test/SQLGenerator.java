@@ -2,12 +2,25 @@ package test;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.AbstractMap;
 
 public class SQLGenerator {
     private final TestCase testCase; // The test case containing table and column information
-    private final Random random; // Random number generator for generating random values
+    private final SplittableRandom random; // Per-worker random number generator for generating random values
+    private final KeyChooser keys; // Distribution of the primary key values that statements target
+    private final StringBuilder sqlBuffer = new StringBuilder(256); // Reused for every generated statement
+    private char[] charBuffer = new char[128]; // Reused for bound string values
+
+    private static final char[] CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final long[] POW10 = new long[19]; // 10^0 .. 10^18
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
 
     // Data type constants
     public static final int TYPE_INT = 1;
@@ -23,92 +36,175 @@ public class SQLGenerator {
     public static final int TYPE_DATE = 11;
 
     public SQLGenerator(TestCase testCase) {
+        this(testCase, new SplittableRandom());
+    }
+
+    public SQLGenerator(TestCase testCase, SplittableRandom random) {
         this.testCase = testCase;
-        this.random = new Random();
+        this.random = random;
+        this.keys = testCase.getKeyChooser();
     }
 
     // Generates an SQL INSERT statement with random values
     public String generateInsertStatement() {
-        StringBuilder columns = new StringBuilder();
-        StringBuilder values = new StringBuilder();
-
-        for (AbstractMap.SimpleEntry<String, String> entry : testCase.getColumns()) {
-            columns.append(entry.getKey()).append(", ");
-            values.append(generateRandomValue(entry.getValue())).append(", ");
+        ColumnSpec[] specs = testCase.getColumnSpecs();
+        StringBuilder sql = startStatement(testCase.getInsertPrefix());
+        for (int i = 0; i < specs.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            if (i == 0) {
+                appendKeyValue(sql, specs[i], true);
+            } else {
+                appendRandomValue(sql, specs[i]);
+            }
         }
-
-        // Remove the trailing comma and space
-        columns.setLength(columns.length() - 2);
-        values.setLength(values.length() - 2);
-
-        return String.format("INSERT INTO %s (%s) VALUES (%s);", testCase.getTableName(), columns.toString(), values.toString());
+        return sql.append(");").toString();
     }
 
     // Generates an SQL DELETE statement using the primary key
     public String generateDeleteStatement() {
-        String primaryKey = testCase.getColumns().get(0).getKey(); // Assuming the first column is the primary key
-        return String.format("DELETE FROM %s WHERE %s = %s;", testCase.getTableName(), primaryKey, generateRandomValue(testCase.getColumns().get(0).getValue()));
+        ColumnSpec primaryKey = testCase.getColumnSpecs()[0]; // Assuming the first column is the primary key
+        StringBuilder sql = startStatement(testCase.getDeletePrefix()).append(primaryKey.getName()).append(" = ");
+        appendKeyValue(sql, primaryKey, false);
+        return sql.append(';').toString();
+    }
+
+    // Generates a point SELECT on a random primary key value
+    public String generateSelectStatement() {
+        ColumnSpec primaryKey = testCase.getColumnSpecs()[0]; // Assuming the first column is the primary key
+        StringBuilder sql = startStatement(testCase.getSelectPrefix()).append(primaryKey.getName()).append(" = ");
+        appendKeyValue(sql, primaryKey, false);
+        return sql.append(';').toString();
     }
 
     // Generates an SQL UPDATE statement with random values
     public String generateUpdateStatement() {
-        StringBuilder setClause = new StringBuilder();
-        String primaryKey = testCase.getColumns().get(0).getKey();  // Assuming the first column is the primary key
-
-        for (AbstractMap.SimpleEntry<String, String> entry : testCase.getColumns()) {
-            if (!entry.getKey().equals(primaryKey)) {
-                setClause.append(entry.getKey()).append(" = ").append(generateRandomValue(entry.getValue())).append(", ");
+        ColumnSpec[] specs = testCase.getColumnSpecs();
+        ColumnSpec primaryKey = specs[0]; // Assuming the first column is the primary key
+        StringBuilder sql = startStatement(testCase.getUpdatePrefix());
+        boolean first = true;
+        for (ColumnSpec spec : specs) {
+            if (!spec.getName().equals(primaryKey.getName())) {
+                if (!first) {
+                    sql.append(", ");
+                }
+                sql.append(spec.getName()).append(" = ");
+                appendRandomValue(sql, spec);
+                first = false;
             }
         }
-
-        // Remove the trailing comma and space
-        setClause.setLength(setClause.length() - 2);
-
-        return String.format("UPDATE %s SET %s WHERE %s = %s;", testCase.getTableName(), setClause.toString(), primaryKey, generateRandomValue(testCase.getColumns().get(0).getValue()));
+        sql.append(" WHERE ").append(primaryKey.getName()).append(" = ");
+        appendKeyValue(sql, primaryKey, false);
+        return sql.append(';').toString();
     }
 
     // Generates an SQL INSERT statement with a specific ID
     public String generateInsertStatementWithId(int id) {
-        StringBuilder columns = new StringBuilder();
-        StringBuilder values = new StringBuilder();
-
-        for (AbstractMap.SimpleEntry<String, String> entry : testCase.getColumns()) {
-            columns.append(entry.getKey()).append(", ");
-            if (entry.getKey().equalsIgnoreCase("id")) {
-                values.append(id).append(", ");
+        ColumnSpec[] specs = testCase.getColumnSpecs();
+        StringBuilder sql = startStatement(testCase.getInsertPrefix());
+        for (int i = 0; i < specs.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            if (specs[i].isId()) {
+                sql.append(id);
             } else {
-                values.append(generateRandomValue(entry.getValue())).append(", ");
+                appendRandomValue(sql, specs[i]);
             }
         }
-
-        // Remove the trailing comma and space
-        columns.setLength(columns.length() - 2);
-        values.setLength(values.length() - 2);
-
-        return String.format("INSERT INTO %s (%s) VALUES (%s);", testCase.getTableName(), columns.toString(), values.toString());
+        return sql.append(");").toString();
     }
 
     // Generates an SQL DELETE statement with a specific ID
     public String generateDeleteStatementWithId(int id) {
-        return String.format("DELETE FROM %s WHERE id = %d;", testCase.getTableName(), id);
+        return startStatement(testCase.getDeletePrefix()).append("id = ").append(id).append(';').toString();
+    }
+
+    // Generates a point SELECT with a specific ID
+    public String generateSelectStatementWithId(int id) {
+        return startStatement(testCase.getSelectPrefix()).append("id = ").append(id).append(';').toString();
     }
 
     // Generates an SQL UPDATE statement with a specific old ID and new ID
     public String generateUpdateStatementWithId(int oldId, int newId) {
-        StringBuilder setClause = new StringBuilder();
-
-        for (AbstractMap.SimpleEntry<String, String> entry : testCase.getColumns()) {
-            if (!entry.getKey().equalsIgnoreCase("id")) {
-                setClause.append(entry.getKey()).append(" = ").append(generateRandomValue(entry.getValue())).append(", ");
+        ColumnSpec[] specs = testCase.getColumnSpecs();
+        StringBuilder sql = startStatement(testCase.getUpdatePrefix());
+        for (int i = 0; i < specs.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(specs[i].getName()).append(" = ");
+            if (specs[i].isId()) {
+                sql.append(newId);
             } else {
-                setClause.append(entry.getKey()).append(" = ").append(newId).append(", ");
+                appendRandomValue(sql, specs[i]);
             }
         }
+        return sql.append(" WHERE id = ").append(oldId).append(';').toString();
+    }
 
-        // Remove the trailing comma and space
-        setClause.setLength(setClause.length() - 2);
+    // SplittableRandom has no nextFloat; same distribution as Random.nextFloat
+    private float nextFloat() {
+        return random.nextInt(1 << 24) / (float) (1 << 24);
+    }
+
+    // Generates a multi-row INSERT statement with the given ids and random other values, used by the bulk loader
+    public String generateMultiRowInsertStatement(int[] ids, int rows) {
+        ColumnSpec[] specs = testCase.getColumnSpecs();
+        StringBuilder sql = startStatement(testCase.getInsertPrefix());
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                sql.append("), (");
+            }
+            for (int i = 0; i < specs.length; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                appendRowValue(sql, specs[i], ids[row], false);
+            }
+        }
+        return sql.append(");").toString();
+    }
+
+    // Generates the PostgreSQL COPY statement matching appendCsvRow
+    public String generateCopyStatement() {
+        StringBuilder sql = new StringBuilder("COPY ").append(testCase.getTableName()).append(" (");
+        ColumnSpec[] specs = testCase.getColumnSpecs();
+        for (int i = 0; i < specs.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(specs[i].getName());
+        }
+        return sql.append(") FROM STDIN WITH (FORMAT csv)").toString();
+    }
 
-        return String.format("UPDATE %s SET %s WHERE id = %d;", testCase.getTableName(), setClause.toString(), oldId);
+    // Appends one row with the given id and random other values in CSV format; generated strings never need escaping
+    public void appendCsvRow(StringBuilder out, int id) {
+        ColumnSpec[] specs = testCase.getColumnSpecs();
+        for (int i = 0; i < specs.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendRowValue(out, specs[i], id, true);
+        }
+        out.append('\n');
+    }
+
+    // Appends the row's id to an INT id column, a random value to any other column
+    private void appendRowValue(StringBuilder out, ColumnSpec spec, int id, boolean csv) {
+        if (spec.isId() && spec.getType() == TYPE_INT) {
+            out.append(id);
+        } else {
+            appendRandomValue(out, spec, csv);
+        }
+    }
+
+    // Resets the reusable statement buffer and starts it with the given prefix
+    private StringBuilder startStatement(String prefix) {
+        sqlBuffer.setLength(0);
+        return sqlBuffer.append(prefix);
     }
 
     // Generates an SQL INSERT statement with placeholders for PreparedStatement
@@ -134,6 +230,12 @@ public class SQLGenerator {
         return String.format("DELETE FROM %s WHERE %s = ?;", testCase.getTableName(), primaryKey);
     }
 
+    // Generates a point SELECT with a placeholder for PreparedStatement
+    public String generatePreparedSelectStatement() {
+        String primaryKey = testCase.getColumns().get(0).getKey(); // Assuming the first column is the primary key
+        return String.format("SELECT * FROM %s WHERE %s = ?;", testCase.getTableName(), primaryKey);
+    }
+
     // Generates an SQL UPDATE statement with placeholders for PreparedStatement
     public String generatePreparedUpdateStatement() {
         StringBuilder setClause = new StringBuilder();
@@ -173,6 +275,11 @@ public class SQLGenerator {
         return String.format("DELETE FROM %s WHERE id = ?;", testCase.getTableName());
     }
 
+    // Generates a point SELECT by ID with a placeholder for PreparedStatement
+    public String generatePreparedSelectStatementWithId() {
+        return String.format("SELECT * FROM %s WHERE id = ?;", testCase.getTableName());
+    }
+
     // Generates an SQL UPDATE statement with a specific old ID, new ID, and placeholders for PreparedStatement
     public String generatePreparedUpdateStatementWithId() {
         StringBuilder setClause = new StringBuilder();
@@ -261,89 +368,260 @@ public class SQLGenerator {
         }
     }
 
-    // Generates a random value based on the column type
-    private String generateRandomValue(String columnType) {
-        columnType = columnType.toUpperCase();
+    // Binds a random value of the column's type directly to a PreparedStatement parameter, without a string round-trip
+    public void bindRandomValue(PreparedStatement pstmt, int parameterIndex, ColumnSpec spec) throws SQLException {
+        bindRandomValue(pstmt, parameterIndex, spec, null);
+    }
 
-        if (columnType.startsWith("VARCHAR") || columnType.startsWith("CHAR") || columnType.startsWith("LVCHAR")) {
-            String[] parts = columnType.replaceAll(".*\\((.*)\\).*", "$1").split(" ");
-            int length = parts.length;
-            if (length == 1) {
-                return "'" + generateRandomString(Integer.parseInt(parts[0]), -1) + "'";
+    // Same as above; when literal is not null the bound value is also appended to it as an SQL literal, for the trace.
+    // The random stream is consumed the same way either way.
+    public void bindRandomValue(PreparedStatement pstmt, int parameterIndex, ColumnSpec spec, StringBuilder literal) throws SQLException {
+        switch (spec.getType()) {
+            case TYPE_VARCHAR:
+            case TYPE_CHAR:
+            case TYPE_TEXT: {
+                String value = generateRandomString(spec);
+                pstmt.setString(parameterIndex, value);
+                if (literal != null) {
+                    literal.append('\'').append(value).append('\'');
+                }
+                break;
+            }
+            case TYPE_DECIMAL: {
+                java.math.BigDecimal value;
+                if (spec.getPrecision() < POW10.length) {
+                    value = java.math.BigDecimal.valueOf(randomUnscaledDecimal(spec), spec.getScale());
+                } else {
+                    value = java.math.BigDecimal.valueOf(randomDecimal(spec)).setScale(spec.getScale(), java.math.RoundingMode.HALF_UP);
+                }
+                pstmt.setBigDecimal(parameterIndex, value);
+                if (literal != null) {
+                    literal.append(value.toPlainString());
+                }
+                break;
             }
-            int min = Integer.parseInt(parts[0]);
-            int max = Integer.parseInt(parts[1]);
-            return "'" + generateRandomString(min, max) + "'";
+            case TYPE_TIMESTAMP: {
+                java.sql.Timestamp value = java.sql.Timestamp.valueOf(java.time.LocalDateTime.of(
+                        random.nextInt(2024 - 2000) + 2000, random.nextInt(12) + 1, random.nextInt(28) + 1,
+                        random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000) * 1_000_000));
+                pstmt.setTimestamp(parameterIndex, value);
+                if (literal != null) {
+                    literal.append('\'').append(value).append('\'');
+                }
+                break;
+            }
+            case TYPE_INT: {
+                int value = random.nextInt(testCase.getMaxRandom());
+                pstmt.setInt(parameterIndex, value);
+                if (literal != null) {
+                    literal.append(value);
+                }
+                break;
+            }
+            case TYPE_BIGINT: {
+                long value = random.nextLong();
+                pstmt.setLong(parameterIndex, value);
+                if (literal != null) {
+                    literal.append(value);
+                }
+                break;
+            }
+            case TYPE_FLOAT: {
+                float value = nextFloat();
+                pstmt.setFloat(parameterIndex, value);
+                if (literal != null) {
+                    literal.append(value);
+                }
+                break;
+            }
+            case TYPE_DOUBLE: {
+                double value = random.nextDouble();
+                pstmt.setDouble(parameterIndex, value);
+                if (literal != null) {
+                    literal.append(value);
+                }
+                break;
+            }
+            case TYPE_BOOLEAN: {
+                boolean value = random.nextInt(2) == 0;
+                pstmt.setBoolean(parameterIndex, value);
+                if (literal != null) {
+                    literal.append(value);
+                }
+                break;
+            }
+            case TYPE_DATE: {
+                java.sql.Date value = java.sql.Date.valueOf(java.time.LocalDate.of(
+                        random.nextInt(2023 - 2000) + 2000, random.nextInt(12) + 1, random.nextInt(28) + 1));
+                pstmt.setDate(parameterIndex, value);
+                if (literal != null) {
+                    literal.append('\'').append(value).append('\'');
+                }
+                break;
+            }
+            default:
+                pstmt.setNull(parameterIndex, java.sql.Types.NULL);
+                if (literal != null) {
+                    literal.append("NULL");
+                }
+                break;
         }
+    }
 
-        if (columnType.startsWith("DECIMAL") || columnType.startsWith("NUMERIC")) {
-            String[] parts = columnType.replaceAll(".*\\((.*)\\).*", "$1").split(" ");
-            int precision = Integer.parseInt(parts[0]);
-            int scale = Integer.parseInt(parts[1]);
-            return generateRandomDecimal(precision, scale);
+    // Binds the row's id to an INT id column and a random value to any other column, used by the bulk loader
+    public void bindRowValue(PreparedStatement pstmt, int parameterIndex, ColumnSpec spec, int id) throws SQLException {
+        if (spec.isId() && spec.getType() == TYPE_INT) {
+            pstmt.setInt(parameterIndex, id);
+        } else {
+            bindRandomValue(pstmt, parameterIndex, spec);
         }
-        if (columnType.startsWith("TIMESTAMP")) {
-            return "'" + generateRandomTimestamp() + "'";
+    }
+
+    // Binds a primary key value drawn from the key distribution; keys that are not INT get a random value.
+    // When literal is not null the bound value is also appended to it, for the trace.
+    public void bindKeyValue(PreparedStatement pstmt, int parameterIndex, ColumnSpec spec, boolean insert,
+            StringBuilder literal) throws SQLException {
+        if (spec.getType() == TYPE_INT) {
+            int value = insert ? keys.nextInsertKey(random) : keys.next(random);
+            pstmt.setInt(parameterIndex, value);
+            if (literal != null) {
+                literal.append(value);
+            }
+        } else {
+            bindRandomValue(pstmt, parameterIndex, spec, literal);
         }
-        switch (columnType) {
-            case "INT":
-                return String.valueOf(random.nextInt(testCase.getMaxRandom()));
-            case "BIGINT":
-                return String.valueOf(random.nextLong());
-            case "FLOAT":
-                return String.valueOf(random.nextFloat());
-            case "DOUBLE":
-                return String.valueOf(random.nextDouble());
-            case "BOOLEAN":
-                return String.valueOf(random.nextBoolean());
-            case "TEXT":
-                return "'" + generateRandomString(500, -1) + "'";
-            case "DATE":
-                return "'" + generateRandomDate() + "'";
+    }
+
+    // Appends a primary key value drawn from the key distribution; keys that are not INT get a random value
+    private void appendKeyValue(StringBuilder sql, ColumnSpec spec, boolean insert) {
+        if (spec.getType() == TYPE_INT) {
+            sql.append(insert ? keys.nextInsertKey(random) : keys.next(random));
+        } else {
+            appendRandomValue(sql, spec);
+        }
+    }
+
+    // Appends a random SQL literal of the column's type to the buffer
+    private void appendRandomValue(StringBuilder sql, ColumnSpec spec) {
+        appendRandomValue(sql, spec, false);
+    }
+
+    // Appends a random value as an SQL literal, or as an unquoted CSV field for COPY (NULL becomes an empty field)
+    private void appendRandomValue(StringBuilder sql, ColumnSpec spec, boolean csv) {
+        switch (spec.getType()) {
+            case TYPE_VARCHAR:
+            case TYPE_CHAR:
+            case TYPE_TEXT:
+                appendQuote(sql, csv);
+                appendRandomChars(sql, randomLength(spec));
+                appendQuote(sql, csv);
+                break;
+            case TYPE_DECIMAL:
+                appendRandomDecimal(sql, spec);
+                break;
+            case TYPE_TIMESTAMP:
+                appendQuote(sql, csv);
+                appendPadded(sql, random.nextInt(2024 - 2000) + 2000, 4).append('-');
+                appendPadded(sql, random.nextInt(12) + 1, 2).append('-');
+                appendPadded(sql, random.nextInt(28) + 1, 2).append(' ');
+                appendPadded(sql, random.nextInt(24), 2).append(':');
+                appendPadded(sql, random.nextInt(60), 2).append(':');
+                appendPadded(sql, random.nextInt(60), 2).append('.');
+                appendPadded(sql, random.nextInt(1000), 3);
+                appendQuote(sql, csv);
+                break;
+            case TYPE_INT:
+                sql.append(random.nextInt(testCase.getMaxRandom()));
+                break;
+            case TYPE_BIGINT:
+                sql.append(random.nextLong());
+                break;
+            case TYPE_FLOAT:
+                sql.append(nextFloat());
+                break;
+            case TYPE_DOUBLE:
+                sql.append(random.nextDouble());
+                break;
+            case TYPE_BOOLEAN:
+                sql.append((random.nextInt(2) == 0));
+                break;
+            case TYPE_DATE:
+                appendQuote(sql, csv);
+                appendPadded(sql, random.nextInt(2023 - 2000) + 2000, 4).append('-');
+                appendPadded(sql, random.nextInt(12) + 1, 2).append('-');
+                appendPadded(sql, random.nextInt(28) + 1, 2);
+                appendQuote(sql, csv);
+                break;
             default:
-                return "NULL";
+                if (!csv) {
+                    sql.append("NULL");
+                }
+                break;
         }
     }
 
-    // Generates a random string of a given length or within a range
-    private String generateRandomString(int min, int max) {
-        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
-        int length;
-        if (max == -1) {
-            length = min;
-        } else {
-            length = random.nextInt(max - min + 1) + min;
+    private static void appendQuote(StringBuilder sql, boolean csv) {
+        if (!csv) {
+            sql.append('\'');
+        }
+    }
+
+    // Picks a string length: fixed, or uniformly within VARCHAR(min max)
+    private int randomLength(ColumnSpec spec) {
+        if (spec.getMaxLength() == -1) {
+            return spec.getMinLength();
         }
-        StringBuilder result = new StringBuilder(length);
+        return random.nextInt(spec.getMaxLength() - spec.getMinLength() + 1) + spec.getMinLength();
+    }
+
+    private void appendRandomChars(StringBuilder sql, int length) {
         for (int i = 0; i < length; i++) {
-            result.append(characters.charAt(random.nextInt(characters.length())));
+            sql.append(CHARACTERS[random.nextInt(CHARACTERS.length)]);
         }
-        return result.toString();
     }
 
-    // Generates a random date between 2000 and 2023
-    private String generateRandomDate() {
-        int year = random.nextInt(2023 - 2000) + 2000;
-        int month = random.nextInt(12) + 1;
-        int day = random.nextInt(28) + 1;
-        return String.format("%04d-%02d-%02d", year, month, day);
+    // Generates a random string for binding, reusing the generator's character buffer
+    private String generateRandomString(ColumnSpec spec) {
+        int length = randomLength(spec);
+        if (charBuffer.length < length) {
+            charBuffer = new char[length];
+        }
+        for (int i = 0; i < length; i++) {
+            charBuffer[i] = CHARACTERS[random.nextInt(CHARACTERS.length)];
+        }
+        return new String(charBuffer, 0, length);
     }
 
-    // Generates a random timestamp between 2000 and 2024
-    private String generateRandomTimestamp() {
-        int year = random.nextInt(2024 - 2000) + 2000;
-        int month = random.nextInt(12) + 1;
-        int day = random.nextInt(28) + 1;
-        int hour = random.nextInt(24);
-        int minute = random.nextInt(60);
-        int second = random.nextInt(60);
-        int millisecond = random.nextInt(1000);
-        return String.format("%04d-%02d-%02d %02d:%02d:%02d.%03d", year, month, day, hour, minute, second, millisecond);
+    // Appends a random decimal below 10^(precision - scale) with exactly scale fraction digits
+    private void appendRandomDecimal(StringBuilder sql, ColumnSpec spec) {
+        int scale = spec.getScale();
+        if (spec.getPrecision() >= POW10.length) {
+            sql.append(java.math.BigDecimal.valueOf(randomDecimal(spec)).setScale(scale, java.math.RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+        long unscaled = randomUnscaledDecimal(spec);
+        sql.append(unscaled / POW10[scale]);
+        if (scale > 0) {
+            sql.append('.');
+            appendPadded(sql, unscaled % POW10[scale], scale);
+        }
     }
 
-    // Generates a random decimal value with the specified precision and scale
-    private String generateRandomDecimal(int precision, int scale) {
-        double value = random.nextDouble() * Math.pow(10, precision - scale);
-        return String.format("%." + scale + "f", value);
+    // Random decimal as an unscaled long with precision digits at most, for precision below 19
+    private long randomUnscaledDecimal(ColumnSpec spec) {
+        return (long) (random.nextDouble() * POW10[spec.getPrecision()]);
+    }
+
+    // Random decimal as a double, for precisions too large for a long
+    private double randomDecimal(ColumnSpec spec) {
+        return random.nextDouble() * Math.pow(10, spec.getPrecision() - spec.getScale());
+    }
+
+    // Appends a non-negative number left-padded with zeros to the given width
+    private static StringBuilder appendPadded(StringBuilder sql, long value, int width) {
+        for (long limit = POW10[width - 1]; limit > 1 && value < limit; limit /= 10) {
+            sql.append('0');
+        }
+        return sql.append(value);
     }
-}
\ No newline at end of file
+}
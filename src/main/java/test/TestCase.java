@@ -3,6 +3,7 @@ package test;
 import java.util.List;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,8 +14,39 @@ public class TestCase {
     private String isolationLevel; // Database transaction isolation level
     private String testCaseName; // Name of the test case
     private List<AbstractMap.SimpleEntry<String, String>> columns; // List of table columns and their data types
+    private ColumnSpec[] columnSpecs; // Columns compiled for value generation, in table order
+    private String insertPrefix; // "INSERT INTO t (c1, c2) VALUES ("
+    private String updatePrefix; // "UPDATE t SET "
+    private String deletePrefix; // "DELETE FROM t WHERE "
+    private String selectPrefix; // "SELECT * FROM t WHERE "
     private String tableName; // Name of the table
     private int max_random; // Maximum random value for test data
+    private ExecMode execMode = ExecMode.LITERAL; // Literal SQL or prepared statements
+    private int readerThreads = 1; // RR read-only clients
+    private int mixedThreads = 1; // RR mixed read-write clients
+    private int writerThreads = 2; // RR write-only clients
+    private ArrivalSchedule.Mode arrivalMode = ArrivalSchedule.Mode.CLOSED; // Closed loop or open-loop arrivals
+    private double targetTps; // Open-loop transaction arrival rate for the whole test case
+    private double[] rateStepTps = new double[0]; // Stepped mode: rate of each step
+    private int[] rateStepSeconds = new int[0]; // Stepped mode: duration of each step
+    private long loadRows = -1; // Rows to bulk load before the clients start, -1 for the default
+    private DataLoader.Method loadMethod = DataLoader.Method.AUTO; // How the load phase sends rows
+    private int loadThreads = 4; // Parallel loader threads
+    private int loadBatchSize = 1000; // Rows per batch, statement or COPY chunk
+    private int verifyFetchSize = 1000; // Rows per round trip when streaming RR verification reads
+    private int verifyMaxRows; // Row limit of RR verification reads, 0 for the whole table
+    private int verifyDiffRows = 20; // Rows reported for a differing region
+    private int observerFanout = 2; // RC observer reads per visibility check
+    private int observerSessions; // RC observer sessions per database, 0 for one per client and observer
+    private int rcFullScanInterval = 1; // RC: full partition scan every N transactions, touched keys otherwise
+    private int retryMaxAttempts = 5; // RR: attempts per transaction before a conflicting one is given up
+    private int retryBaseBackoffMs = 2; // RR: backoff ceiling after the first conflict, doubled per attempt
+    private int retryMaxBackoffMs = 200; // RR: upper bound of the backoff ceiling
+    private int[] opWeights = { 1, 1, 1, 0 }; // Relative weights of insert, delete, update and select statements
+    private String txnLength; // Statements per transaction, see TransactionShape; null for the isolation default
+    private double commitRatio = 0.7; // Fraction of read-write transactions that commit
+    private String keyDistribution; // Key chooser spec, see KeyChooser; null for uniform
+    private KeyChooser keyChooser; // Built on first use from keyDistribution and max_random
 
     // Constructor to initialize the test case name
     public TestCase(String testCaseName) {
@@ -30,6 +62,7 @@ public class TestCase {
         this.createTableStatement = createTableStatement;
         parseColumns(createTableStatement); // Parse column information
         parseTableName(createTableStatement); // Parse table name
+        compileStatementText(); // Precompute the fixed parts of generated SQL
     }
 
     // Getter and setter for the select SQL statement
@@ -59,6 +92,257 @@ public class TestCase {
         this.isolationLevel = isolationLevel;
     }
 
+    // Getter and setter for the statement execution mode
+    public ExecMode getExecMode() {
+        return execMode;
+    }
+
+    public void setExecMode(ExecMode execMode) {
+        this.execMode = execMode;
+    }
+
+    // Getters and setters for the client thread counts per role
+    public int getReaderThreads() {
+        return readerThreads;
+    }
+
+    public void setReaderThreads(int readerThreads) {
+        this.readerThreads = readerThreads;
+    }
+
+    public int getMixedThreads() {
+        return mixedThreads;
+    }
+
+    public void setMixedThreads(int mixedThreads) {
+        this.mixedThreads = mixedThreads;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    // Total client threads; RC test cases run this many RC workers, each on its own key partition
+    public int getThreadCount() {
+        return readerThreads + mixedThreads + writerThreads;
+    }
+
+    // Getters and setters for the open-loop arrival settings
+    public ArrivalSchedule.Mode getArrivalMode() {
+        return arrivalMode;
+    }
+
+    public void setArrivalMode(ArrivalSchedule.Mode arrivalMode) {
+        this.arrivalMode = arrivalMode;
+    }
+
+    public double getTargetTps() {
+        return targetTps;
+    }
+
+    public void setTargetTps(double targetTps) {
+        this.targetTps = targetTps;
+    }
+
+    public double[] getRateStepTps() {
+        return rateStepTps;
+    }
+
+    public int[] getRateStepSeconds() {
+        return rateStepSeconds;
+    }
+
+    /**
+     * Parses the stepped-rate schedule, e.g. "100:30, 200:30, 400:60" for 30s at 100 tps,
+     * 30s at 200 tps, then 400 tps. The last rate holds after its step ends.
+     *
+     * @param rateSteps The rate_steps setting, may be null.
+     */
+    public void setRateSteps(String rateSteps) {
+        if (rateSteps == null || rateSteps.trim().isEmpty()) {
+            return;
+        }
+        String[] steps = rateSteps.split(",");
+        rateStepTps = new double[steps.length];
+        rateStepSeconds = new int[steps.length];
+        for (int i = 0; i < steps.length; i++) {
+            String[] parts = steps[i].trim().split(":");
+            rateStepTps[i] = Double.parseDouble(parts[0].trim());
+            rateStepSeconds[i] = Integer.parseInt(parts[1].trim());
+        }
+    }
+
+    public int[] getOpWeights() {
+        return opWeights;
+    }
+
+    /**
+     * Parses the operation weights, e.g. "insert:1, delete:1, update:2, select:6". Operations that are not
+     * listed get weight 0.
+     *
+     * @param opWeights The op_weights setting, may be null.
+     */
+    public void setOpWeights(String opWeights) {
+        if (opWeights == null || opWeights.trim().isEmpty()) {
+            return;
+        }
+        int[] weights = new int[TransactionShape.OPERATIONS.length];
+        for (String entry : opWeights.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int operation = Arrays.asList(TransactionShape.OPERATIONS).indexOf(parts[0].trim().toLowerCase());
+            if (operation < 0 || parts.length != 2) {
+                throw new IllegalArgumentException(testCaseName + ": invalid op_weights entry: " + entry.trim());
+            }
+            weights[operation] = Integer.parseInt(parts[1].trim());
+        }
+        this.opWeights = weights;
+    }
+
+    public String getTxnLength() {
+        return txnLength;
+    }
+
+    public void setTxnLength(String txnLength) {
+        this.txnLength = (txnLength == null || txnLength.trim().isEmpty()) ? null : txnLength.trim();
+    }
+
+    public double getCommitRatio() {
+        return commitRatio;
+    }
+
+    public void setCommitRatio(double commitRatio) {
+        this.commitRatio = commitRatio;
+    }
+
+    public String getKeyDistribution() {
+        return keyDistribution;
+    }
+
+    public void setKeyDistribution(String keyDistribution) {
+        this.keyDistribution = (keyDistribution == null || keyDistribution.trim().isEmpty()) ? null : keyDistribution.trim();
+        this.keyChooser = null;
+    }
+
+    /**
+     * Returns the key chooser shared by the test case's clients, built over [0, max_random) on first use.
+     */
+    public synchronized KeyChooser getKeyChooser() {
+        if (keyChooser == null) {
+            keyChooser = KeyChooser.parse(keyDistribution, max_random);
+        }
+        return keyChooser;
+    }
+
+    // Getters and setters for the bulk load phase
+    public long getLoadRows() {
+        return loadRows;
+    }
+
+    public void setLoadRows(long loadRows) {
+        this.loadRows = loadRows;
+    }
+
+    public DataLoader.Method getLoadMethod() {
+        return loadMethod;
+    }
+
+    public void setLoadMethod(DataLoader.Method loadMethod) {
+        this.loadMethod = loadMethod;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+
+    public int getLoadBatchSize() {
+        return loadBatchSize;
+    }
+
+    public void setLoadBatchSize(int loadBatchSize) {
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public int getVerifyFetchSize() {
+        return verifyFetchSize;
+    }
+
+    public void setVerifyFetchSize(int verifyFetchSize) {
+        this.verifyFetchSize = verifyFetchSize;
+    }
+
+    public int getVerifyMaxRows() {
+        return verifyMaxRows;
+    }
+
+    public void setVerifyMaxRows(int verifyMaxRows) {
+        this.verifyMaxRows = verifyMaxRows;
+    }
+
+    public int getVerifyDiffRows() {
+        return verifyDiffRows;
+    }
+
+    public void setVerifyDiffRows(int verifyDiffRows) {
+        this.verifyDiffRows = verifyDiffRows;
+    }
+
+    public int getObserverFanout() {
+        return observerFanout;
+    }
+
+    public void setObserverFanout(int observerFanout) {
+        this.observerFanout = observerFanout;
+    }
+
+    // Defaults to enough sessions for every client's observers to land on the same database at once
+    public int getObserverSessions() {
+        return observerSessions > 0 ? observerSessions : getThreadCount() * observerFanout;
+    }
+
+    public void setObserverSessions(int observerSessions) {
+        this.observerSessions = observerSessions;
+    }
+
+    public int getRcFullScanInterval() {
+        return rcFullScanInterval;
+    }
+
+    public void setRcFullScanInterval(int rcFullScanInterval) {
+        this.rcFullScanInterval = rcFullScanInterval;
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
+
+    public int getRetryBaseBackoffMs() {
+        return retryBaseBackoffMs;
+    }
+
+    public void setRetryBaseBackoffMs(int retryBaseBackoffMs) {
+        this.retryBaseBackoffMs = retryBaseBackoffMs;
+    }
+
+    public int getRetryMaxBackoffMs() {
+        return retryMaxBackoffMs;
+    }
+
+    public void setRetryMaxBackoffMs(int retryMaxBackoffMs) {
+        this.retryMaxBackoffMs = retryMaxBackoffMs;
+    }
+
     // Setter and getter for the max random value
     public void setMaxRandom(int max_random) {
         this.max_random = max_random;
@@ -83,6 +367,28 @@ public class TestCase {
         return columns;
     }
 
+    // Getter for the compiled columns
+    public ColumnSpec[] getColumnSpecs() {
+        return columnSpecs;
+    }
+
+    // Getters for the precomputed SQL prefixes used by SQLGenerator
+    public String getInsertPrefix() {
+        return insertPrefix;
+    }
+
+    public String getUpdatePrefix() {
+        return updatePrefix;
+    }
+
+    public String getDeletePrefix() {
+        return deletePrefix;
+    }
+
+    public String getSelectPrefix() {
+        return selectPrefix;
+    }
+
     /**
      * Replaces commas within parentheses in a string with spaces.
      * This helps avoid splitting column definitions incorrectly.
@@ -132,6 +438,12 @@ public class TestCase {
             }
         }
 
+        // Compile the column types once so generators never re-parse them
+        columnSpecs = new ColumnSpec[columns.size()];
+        for (int i = 0; i < columnSpecs.length; i++) {
+            columnSpecs[i] = ColumnSpec.compile(columns.get(i).getKey(), columns.get(i).getValue());
+        }
+
         // Uncomment to debug and print parsed columns
         // columns.forEach(entry -> System.out.println("Column: " + entry.getKey() + ", Type: " + entry.getValue()));
     }
@@ -146,6 +458,23 @@ public class TestCase {
         tableName = parts[2]; // Table name is the third token in the statement
     }
 
+    /**
+     * Builds the constant parts of the generated INSERT, UPDATE and DELETE statements.
+     */
+    private void compileStatementText() {
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        for (int i = 0; i < columnSpecs.length; i++) {
+            if (i > 0) {
+                insert.append(", ");
+            }
+            insert.append(columnSpecs[i].getName());
+        }
+        insertPrefix = insert.append(") VALUES (").toString();
+        updatePrefix = "UPDATE " + tableName + " SET ";
+        deletePrefix = "DELETE FROM " + tableName + " WHERE ";
+        selectPrefix = "SELECT * FROM " + tableName + " WHERE ";
+    }
+
     /**
      * Overrides the toString method to provide a detailed representation of the test case.
      *
@@ -159,6 +488,10 @@ public class TestCase {
                 ", selectStatement='" + selectStatement + '\'' +
                 ", indexColumn='" + indexColumn + '\'' +
                 ", isolationLevel='" + isolationLevel + '\'' +
+                ", execMode=" + execMode +
+                ", threads=" + readerThreads + "/" + mixedThreads + "/" + writerThreads +
+                ", arrivalMode=" + arrivalMode +
+                ", targetTps=" + targetTps +
                 ", tableName='" + tableName + '\'' +
                 ", columns=" + columns +
                 '}';
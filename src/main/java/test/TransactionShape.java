@@ -0,0 +1,124 @@
+package test;
+
+import java.util.SplittableRandom;
+
+/**
+ * Shape of the generated read-write transactions: how many statements they run, which operations those statements
+ * are and how often the transaction commits. Built once per test case and shared by its clients; every draw uses the
+ * caller's random stream.
+ */
+public class TransactionShape {
+    // Operation indexes, in the order of the op_weights setting
+    public static final int INSERT = 0;
+    public static final int DELETE = 1;
+    public static final int UPDATE = 2;
+    public static final int SELECT = 3;
+    public static final String[] OPERATIONS = { "insert", "delete", "update", "select" };
+
+    // Statements per transaction when txn_length is not set: up to 14 per RR batch, up to 9 per RC transaction
+    private static final String DEFAULT_RR_LENGTH = "uniform:0:14";
+    private static final String DEFAULT_RC_LENGTH = "uniform:0:9";
+
+    public enum Length {
+        FIXED,    // Always max statements
+        UNIFORM,  // Uniform between min and max, inclusive
+        GEOMETRIC // Geometric with the given mean, capped at max
+    }
+
+    private final int[] cumulativeWeights = new int[OPERATIONS.length];
+    private final Length length;
+    private final int min;
+    private final int max;
+    private final double logContinue; // log(mean / (mean + 1)) for geometric lengths
+    private final double commitRatio;
+
+    /**
+     * @param weights     Relative weights of insert, delete, update and select.
+     * @param lengthSpec  "fixed:n", "uniform:min:max" or "geometric:mean[:max]".
+     * @param commitRatio Fraction of transactions that commit, the rest roll back.
+     */
+    public TransactionShape(int[] weights, String lengthSpec, double commitRatio) {
+        int total = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("op_weights: negative weight for " + OPERATIONS[i]);
+            }
+            total += weights[i];
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("op_weights: at least one operation needs a positive weight");
+        }
+        if (commitRatio < 0 || commitRatio > 1) {
+            throw new IllegalArgumentException("commit_ratio must be between 0 and 1: " + commitRatio);
+        }
+        this.commitRatio = commitRatio;
+
+        String[] parts = lengthSpec.trim().split(":");
+        try {
+            length = Length.valueOf(parts[0].trim().toUpperCase());
+            switch (length) {
+                case FIXED:
+                    min = max = Integer.parseInt(parts[1].trim());
+                    logContinue = 0;
+                    break;
+                case UNIFORM:
+                    min = Integer.parseInt(parts[1].trim());
+                    max = Integer.parseInt(parts[2].trim());
+                    logContinue = 0;
+                    break;
+                default:
+                    double mean = Double.parseDouble(parts[1].trim());
+                    min = 0;
+                    max = parts.length > 2 ? Integer.parseInt(parts[2].trim()) : Integer.MAX_VALUE;
+                    logContinue = Math.log(mean / (mean + 1));
+                    break;
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("txn_length: expected fixed:n, uniform:min:max or geometric:mean[:max], got " + lengthSpec, e);
+        }
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("txn_length: invalid bounds in " + lengthSpec);
+        }
+    }
+
+    public static TransactionShape forTestCase(TestCase testCase) {
+        String lengthSpec = testCase.getTxnLength();
+        if (lengthSpec == null) {
+            lengthSpec = "READ_COMMITTED".equals(testCase.getIsolationLevel()) ? DEFAULT_RC_LENGTH : DEFAULT_RR_LENGTH;
+        }
+        return new TransactionShape(testCase.getOpWeights(), lengthSpec, testCase.getCommitRatio());
+    }
+
+    /** Number of statements for the next transaction (or RR statement batch). */
+    public int nextLength(SplittableRandom random) {
+        switch (length) {
+            case FIXED:
+                return max;
+            case UNIFORM:
+                return min + random.nextInt(max - min + 1);
+            default:
+                // Failures before the first success: floor(log(U) / log(q)), with q the chance to continue
+                if (logContinue == Double.NEGATIVE_INFINITY) {
+                    return 0;
+                }
+                double n = Math.floor(Math.log(1 - random.nextDouble()) / logContinue);
+                return n >= max ? max : (int) n;
+        }
+    }
+
+    /** Index of the next operation, one of INSERT, DELETE, UPDATE or SELECT. */
+    public int nextOperation(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int operation = 0;
+        while (pick >= cumulativeWeights[operation]) {
+            operation++;
+        }
+        return operation;
+    }
+
+    /** Whether the next transaction commits rather than rolls back. */
+    public boolean nextCommit(SplittableRandom random) {
+        return random.nextDouble() < commitRatio;
+    }
+}
@@ -0,0 +1,71 @@
+package test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Write set of a transaction queued as literal SQL and sent as one JDBC Statement batch (exec_mode = batched).
+ * The drivers send a batch in a single round trip: MySQL rewrites it into a multi-statement request
+ * (rewriteBatchedStatements), PostgreSQL pipelines it. Statements keep their order.
+ */
+public class WriteBatch implements AutoCloseable {
+    private final Statement statement;
+    private int size;
+
+    public WriteBatch(Connection connection) throws SQLException {
+        this.statement = connection.createStatement();
+    }
+
+    /**
+     * Creates the batch for a worker's connection, or returns null unless the test case runs batched.
+     */
+    public static WriteBatch forMode(Connection connection, TestCase testCase) throws SQLException {
+        if (testCase.getExecMode() != ExecMode.BATCHED) {
+            return null;
+        }
+        return new WriteBatch(connection);
+    }
+
+    public void add(String sql) throws SQLException {
+        statement.addBatch(sql);
+        size++;
+    }
+
+    /** Number of statements queued since the last flush. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Sends the queued statements. The batch is empty afterwards, also when it fails.
+     *
+     * @return Rows affected; statements whose count the driver does not report (SUCCESS_NO_INFO) are not counted.
+     */
+    public long flush() throws SQLException {
+        if (size == 0) {
+            return 0;
+        }
+        try {
+            long rows = 0;
+            for (int count : statement.executeBatch()) {
+                if (count > 0) {
+                    rows += count;
+                }
+            }
+            return rows;
+        } finally {
+            size = 0;
+            statement.clearBatch();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
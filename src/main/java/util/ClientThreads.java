@@ -0,0 +1,53 @@
+package util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads that run simulated clients. Platform threads are the default; virtual threads
+ * are available when the project is built with the java21 profile, which adds VirtualThreadFactory.
+ */
+public class ClientThreads {
+    private static final String VIRTUAL_FACTORY_CLASS = "util.VirtualThreadFactory";
+
+    private static ThreadFactory factory = Thread::new;
+    private static boolean virtual;
+
+    /**
+     * Selects the thread kind from the client_threads setting.
+     *
+     * @param mode "platform" (default) or "virtual".
+     * @throws IllegalStateException If virtual threads are requested from a Java 8 build.
+     */
+    public static synchronized void configure(String mode) {
+        if (mode == null || mode.trim().equalsIgnoreCase("platform")) {
+            return;
+        }
+        if (!mode.trim().equalsIgnoreCase("virtual")) {
+            throw new IllegalArgumentException("Unknown client_threads mode: " + mode);
+        }
+        try {
+            factory = (ThreadFactory) Class.forName(VIRTUAL_FACTORY_CLASS).getDeclaredConstructor().newInstance();
+            virtual = true;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("client_threads=virtual requires the java21 build profile (mvn -P java21 package) and a Java 21 runtime", e);
+        }
+    }
+
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Starts a client thread.
+     *
+     * @param name The thread name.
+     * @param task The client's work.
+     * @return The started thread.
+     */
+    public static Thread start(String name, Runnable task) {
+        Thread thread = factory.newThread(task);
+        thread.setName(name);
+        thread.start();
+        return thread;
+    }
+}
@@ -1,29 +1,217 @@
 package util;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Per-thread SQL trace writer. The owning worker hands events to a single-producer ring buffer;
+ * the shared TraceFlusher thread drains them in batches to disk, rotating and compressing files
+ * as configured. Workers never perform file I/O themselves.
+ */
 public class ControlledFileWriter {
-    private FileWriter fileWriter;
-    private boolean enableLogging;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final AtomicLong totalDropped = new AtomicLong();
+
+    private final boolean enableLogging;
+    private final String fileName;
+    private final TraceSettings settings;
+
+    // Ring buffer written only by the owning worker and read only by the flusher
+    private String[] lines;
+    private long[] timestamps;
+    private int mask;
+    private final AtomicLong head = new AtomicLong(); // Next slot the flusher reads
+    private final AtomicLong tail = new AtomicLong(); // Next slot the worker writes
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+    private final CountDownLatch drained = new CountDownLatch(1);
+
+    // Output state, only touched by the flusher thread and the shutdown hook
+    private Writer out;
+    private boolean finished;
+    private long bytesInFile;
+    private long fileOpenedAt;
+    private int fileSequence;
+    private final StringBuilder batch = new StringBuilder(8192);
 
     public ControlledFileWriter(String fileName, boolean enableLogging) throws IOException {
+        this(fileName, enableLogging, TraceSettings.defaults());
+    }
+
+    public ControlledFileWriter(String fileName, boolean enableLogging, TraceSettings settings) throws IOException {
         this.enableLogging = enableLogging;
+        this.fileName = fileName;
+        this.settings = settings;
         if (enableLogging) {
-            fileWriter = new FileWriter(fileName,false);
+            lines = new String[settings.getBufferSize()];
+            timestamps = new long[settings.getBufferSize()];
+            mask = settings.getBufferSize() - 1;
+            openNextFile();
+            TraceFlusher.register(this);
         }
     }
 
+    /**
+     * Queues a raw line. The caller supplies any line terminator.
+     *
+     * @param str The text to write.
+     */
     public void write(String str) throws IOException {
-        if (enableLogging && fileWriter != null) {
-            fileWriter.write(str);
+        if (enableLogging) {
+            offer(str, NO_TIMESTAMP);
+        }
+    }
+
+    /**
+     * Queues a statement; the background writer appends "--" and the capture time followed by a newline,
+     * so timestamp formatting stays off the worker thread.
+     *
+     * @param sql The SQL text.
+     */
+    public void writeStatement(String sql) throws IOException {
+        if (enableLogging) {
+            offer(sql, System.currentTimeMillis());
         }
     }
 
+    public boolean isEnabled() {
+        return enableLogging;
+    }
+
+    /**
+     * Stops accepting events and waits for the background writer to flush and close the file.
+     */
     public void close() throws IOException {
-        if (enableLogging && fileWriter != null) {
-            fileWriter.close();
+        if (enableLogging && !closed) {
+            closed = true;
+            TraceFlusher.wakeUp();
+            try {
+                drained.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
-}
\ No newline at end of file
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return The number of trace events dropped by all writers because their buffers were full.
+     */
+    public static long getTotalDropped() {
+        return totalDropped.get();
+    }
+
+    private void offer(String line, long timestamp) {
+        long t = tail.get();
+        while (t - head.get() >= lines.length) {
+            if (settings.getOverflowPolicy() == TraceSettings.OverflowPolicy.DROP || closed) {
+                dropped.incrementAndGet();
+                totalDropped.incrementAndGet();
+                return;
+            }
+            TraceFlusher.wakeUp();
+            LockSupport.parkNanos(50_000L);
+        }
+        int slot = (int) (t & mask);
+        lines[slot] = line;
+        timestamps[slot] = timestamp;
+        tail.lazySet(t + 1);
+    }
+
+    /**
+     * Drains queued events into the current file. Called only by the flusher thread and the shutdown hook.
+     *
+     * @return The number of events written.
+     */
+    synchronized int drain() throws IOException {
+        if (finished) {
+            return 0;
+        }
+        long h = head.get();
+        long t = tail.get();
+        if (h == t) {
+            rotateIfDue(0);
+            return 0;
+        }
+        batch.setLength(0);
+        for (long i = h; i < t; i++) {
+            int slot = (int) (i & mask);
+            batch.append(lines[slot]);
+            if (timestamps[slot] != NO_TIMESTAMP) {
+                batch.append("--");
+                TIME_FORMATTER.formatTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps[slot]), ZONE), batch);
+                batch.append('\n');
+            }
+            lines[slot] = null;
+        }
+        head.lazySet(t);
+        out.append(batch);
+        out.flush();
+        rotateIfDue(batch.length());
+        return (int) (t - h);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Flushes whatever is left and closes the file. Called only by the flusher thread.
+     */
+    synchronized void finish() {
+        if (finished) {
+            return;
+        }
+        try {
+            drain();
+            out.close();
+        } catch (IOException e) {
+            Logger.logError("Failed to close SQL trace file " + fileName, e);
+        } finally {
+            finished = true;
+            drained.countDown();
+        }
+    }
+
+    private void rotateIfDue(int written) throws IOException {
+        bytesInFile += written;
+        boolean bySize = settings.getRotateBytes() > 0 && bytesInFile >= settings.getRotateBytes();
+        boolean byTime = settings.getRotateMillis() > 0 && bytesInFile > 0
+                && System.currentTimeMillis() - fileOpenedAt >= settings.getRotateMillis();
+        if (bySize || byTime) {
+            out.close();
+            openNextFile();
+        }
+    }
+
+    private void openNextFile() throws IOException {
+        String name = fileSequence == 0 ? fileName : fileName + "." + fileSequence;
+        OutputStream stream = new FileOutputStream(settings.isCompress() ? name + ".gz" : name, false);
+        if (settings.isCompress()) {
+            stream = new GZIPOutputStream(stream, 65536, true);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 65536);
+        fileSequence++;
+        bytesInFile = 0;
+        fileOpenedAt = System.currentTimeMillis();
+    }
+}
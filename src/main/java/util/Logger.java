@@ -1,37 +1,185 @@
 package util;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Run/error logger. Run log callers enqueue entries into a bounded queue and return immediately; a single
+ * background thread keeps test.log open and writes them in batches, and run log entries are dropped and counted
+ * when the queue is full. Error entries are written to error.log synchronously, so a report written just before
+ * System.exit() is on disk when the call returns.
+ */
 public class Logger {
     private static final String ERRLOG_FILE = "./error.log";
     private static final String LOG_FILE = "./test.log";
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final int QUEUE_CAPACITY = 16384;
+    private static final int BATCH_SIZE = 512;
+    private static final long FLUSH_WAIT_MILLIS = 2000; // How long flush() waits for the writer's in-flight batch
+    private static final long RATE_LIMIT_WINDOW_MILLIS = 1000; // At most one rate-limited message per key per window
+
+    private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong enqueued = new AtomicLong(); // Run log entries accepted by the queue
+    private static final AtomicLong written = new AtomicLong(); // Run log entries written by either thread
+    private static final ConcurrentMap<String, RateLimit> rateLimits = new ConcurrentHashMap<>();
+    private static final Object writeLock = new Object(); // Shared by the writer thread and the shutdown hook
+    private static Writer logWriter;
+    private static PrintWriter errorWriter;
+
+    static {
+        Thread writerThread = new Thread(Logger::writeLoop, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::flush, "log-shutdown"));
+    }
 
     public static void log(String message) {
-        try (FileWriter fileWriter = new FileWriter(LOG_FILE, true);
-             PrintWriter printWriter = new PrintWriter(fileWriter)) {
-            String timestamp = LocalDateTime.now().format(DATE_TIME_FORMATTER);
-            printWriter.printf("[%s] %s%n", timestamp, message);
-        } catch (IOException e) {
-            e.printStackTrace();
+        // Counted first, so flush() never sees a written entry it was not told about
+        enqueued.incrementAndGet();
+        if (!queue.offer(new Entry(System.currentTimeMillis(), message, null))) {
+            enqueued.decrementAndGet();
+            dropped.incrementAndGet();
         }
     }
 
+    /**
+     * Writes an error entry and its stack trace to error.log before returning.
+     */
     public static void logError(String message, Throwable throwable) {
-        try (FileWriter fileWriter = new FileWriter(ERRLOG_FILE, true);
-             PrintWriter printWriter = new PrintWriter(fileWriter)) {
-            String timestamp = LocalDateTime.now().format(DATE_TIME_FORMATTER);
-            printWriter.printf("[%s] ERROR: %s%n", timestamp, message);
-            throwable.printStackTrace(printWriter);
-        } catch (IOException e) {
-            e.printStackTrace();
+        writeBatch(Collections.singletonList(new Entry(System.currentTimeMillis(), message, throwable)));
+    }
+
+    /**
+     * Logs a message at most once per second for the given key, e.g. repeated lock conflicts.
+     * The message is only formatted when it is actually emitted; suppressed repeats are counted
+     * and reported with the next emitted message for the same key.
+     *
+     * @param key    Identifies the kind of message being rate-limited.
+     * @param format The String.format pattern.
+     * @param args   The format arguments.
+     */
+    public static void logRateLimited(String key, String format, Object... args) {
+        RateLimit limit = rateLimits.computeIfAbsent(key, k -> new RateLimit());
+        long now = System.currentTimeMillis();
+        long last = limit.lastEmitted.get();
+        if (now - last < RATE_LIMIT_WINDOW_MILLIS || !limit.lastEmitted.compareAndSet(last, now)) {
+            limit.suppressed.incrementAndGet();
+            return;
+        }
+        long suppressed = limit.suppressed.getAndSet(0);
+        String message = String.format(format, args);
+        if (suppressed > 0) {
+            message += String.format(" (%d similar messages suppressed)", suppressed);
+        }
+        log(message);
+    }
+
+    /**
+     * @return The number of run log messages dropped because the queue was full.
+     */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes all queued entries to disk, then waits briefly for the batch the writer thread may have taken
+     * from the queue but not yet written. Called by the shutdown hook and before exiting.
+     */
+    public static void flush() {
+        List<Entry> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        writeBatch(batch);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_WAIT_MILLIS);
+        while (written.get() < enqueued.get() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private static void writeLoop() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            writeBatch(batch);
+            batch.clear();
         }
     }
-}
 
+    private static void writeBatch(List<Entry> batch) {
+        synchronized (writeLock) {
+            try {
+                boolean wroteLog = false;
+                boolean wroteError = false;
+                int errors = 0;
+                for (Entry entry : batch) {
+                    String timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp), ZONE)
+                            .format(DATE_TIME_FORMATTER);
+                    if (entry.throwable == null) {
+                        if (logWriter == null) {
+                            logWriter = new BufferedWriter(new FileWriter(LOG_FILE, true), 65536);
+                        }
+                        logWriter.write("[" + timestamp + "] " + entry.message + System.lineSeparator());
+                        wroteLog = true;
+                    } else {
+                        if (errorWriter == null) {
+                            errorWriter = new PrintWriter(new BufferedWriter(new FileWriter(ERRLOG_FILE, true)));
+                        }
+                        errorWriter.printf("[%s] ERROR: %s%n", timestamp, entry.message);
+                        entry.throwable.printStackTrace(errorWriter);
+                        wroteError = true;
+                        errors++;
+                    }
+                }
+                if (wroteLog) {
+                    logWriter.flush();
+                }
+                written.addAndGet(batch.size() - errors);
+                if (wroteError) {
+                    errorWriter.flush();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
+    private static class Entry {
+        final long timestamp;
+        final String message;
+        final Throwable throwable; // null for run log entries
 
+        Entry(long timestamp, String message, Throwable throwable) {
+            this.timestamp = timestamp;
+            this.message = message;
+            this.throwable = throwable;
+        }
+    }
+
+    private static class RateLimit {
+        final AtomicLong lastEmitted = new AtomicLong(Long.MIN_VALUE / 2);
+        final AtomicLong suppressed = new AtomicLong();
+    }
+}
@@ -0,0 +1,43 @@
+package util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives independent, reproducible random streams from the run seed. Every worker thread gets
+ * its own SplittableRandom, so there is no shared generator to contend on and the same seed
+ * replays the same per-worker operation sequence.
+ */
+public class RandomSource {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Creates the generator for one worker of a test case.
+     *
+     * @param runSeed  The run seed from config.ini.
+     * @param stream   The name of the stream, usually the test case name.
+     * @param index    The worker index within the stream.
+     * @return A generator that depends only on the three arguments.
+     */
+    public static SplittableRandom forWorker(long runSeed, String stream, int index) {
+        long seed = mix64(runSeed);
+        seed = mix64(seed ^ stream.hashCode());
+        seed = mix64(seed + GOLDEN_GAMMA * (index + 1));
+        return new SplittableRandom(seed);
+    }
+
+    /**
+     * Picks a seed for runs that do not configure one.
+     *
+     * @return A fresh seed.
+     */
+    public static long newRunSeed() {
+        return mix64(System.nanoTime() ^ System.currentTimeMillis());
+    }
+
+    // SplitMix64 finaliser
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,78 @@
+package util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run phases and the cooperative stop signal shared by App and the workers. The load phase ends once
+ * every test case has created and loaded its table; clients wait for that, run until the phase becomes
+ * STOPPING and then leave their loop after the transaction in progress.
+ */
+public class RunControl {
+    public enum Phase { LOAD, WARMUP, MEASURE, COOLDOWN, STOPPING }
+
+    private static volatile Phase phase = Phase.LOAD;
+    private static volatile CountDownLatch loads = new CountDownLatch(0);
+    private static final Object clientLock = new Object();
+    private static int activeClients; // Guarded by clientLock
+
+    /**
+     * Sets how many test cases must finish their load phase before the clients start.
+     */
+    public static void expectLoads(int testCases) {
+        loads = new CountDownLatch(testCases);
+    }
+
+    /** Called once by each test case when its setup is done, whether or not it succeeded. */
+    public static void loadFinished() {
+        loads.countDown();
+    }
+
+    public static void awaitLoaded() throws InterruptedException {
+        loads.await();
+    }
+
+    public static Phase getPhase() {
+        return phase;
+    }
+
+    public static void setPhase(Phase newPhase) {
+        phase = newPhase;
+        System.out.println("Run phase: " + newPhase.name().toLowerCase());
+    }
+
+    /** False once the run is stopping; clients check it before each transaction. */
+    public static boolean isRunning() {
+        return phase != Phase.STOPPING;
+    }
+
+    /** Registers a client thread; call before starting it. */
+    public static void clientStarted() {
+        synchronized (clientLock) {
+            activeClients++;
+        }
+    }
+
+    public static void clientFinished() {
+        synchronized (clientLock) {
+            activeClients--;
+            clientLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits for every client to leave its loop.
+     *
+     * @return The number of clients still running when the timeout expired.
+     */
+    public static int awaitClients(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (clientLock) {
+            long remaining;
+            while (activeClients > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(clientLock, remaining);
+            }
+            return activeClients;
+        }
+    }
+}
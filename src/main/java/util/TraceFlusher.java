@@ -0,0 +1,65 @@
+package util;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background thread that batches the ring buffers of all ControlledFileWriters to disk.
+ * Started lazily with the first enabled writer; a shutdown hook flushes what is left on exit.
+ */
+class TraceFlusher implements Runnable {
+    private static final long IDLE_PARK_NANOS = 2_000_000L; // 2 ms between empty polls
+
+    private static final CopyOnWriteArrayList<ControlledFileWriter> writers = new CopyOnWriteArrayList<>();
+    private static Thread thread;
+
+    static synchronized void register(ControlledFileWriter writer) {
+        writers.add(writer);
+        if (thread == null) {
+            thread = new Thread(new TraceFlusher(), "sql-trace-writer");
+            thread.setDaemon(true);
+            thread.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(TraceFlusher::flushAll, "sql-trace-shutdown"));
+        }
+    }
+
+    static void wakeUp() {
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            int written = 0;
+            for (ControlledFileWriter writer : writers) {
+                if (writer.isClosed()) {
+                    if (writers.remove(writer)) {
+                        writer.finish();
+                    }
+                    continue;
+                }
+                try {
+                    written += writer.drain();
+                } catch (IOException e) {
+                    Logger.logError("Failed to write SQL trace", e);
+                }
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    // Runs on JVM exit so traces are complete even when the process is stopped mid-run
+    private static void flushAll() {
+        for (ControlledFileWriter writer : writers) {
+            if (writers.remove(writer)) {
+                writer.finish();
+            }
+        }
+    }
+}
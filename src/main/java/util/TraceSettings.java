@@ -0,0 +1,66 @@
+package util;
+
+/**
+ * Settings for the asynchronous SQL trace pipeline, read from the [main] section of config.ini.
+ */
+public class TraceSettings {
+    /** What a worker does when its trace ring buffer is full. */
+    public enum OverflowPolicy {
+        DROP, // Discard the event and count it
+        BLOCK // Wait for the background writer to make room
+    }
+
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long rotateBytes;
+    private final long rotateMillis;
+    private final boolean compress;
+
+    /**
+     * @param bufferSize     Ring buffer capacity per worker, rounded up to a power of two.
+     * @param overflowPolicy Policy applied when the ring buffer is full.
+     * @param rotateBytes    Rotate the trace file after this many bytes, 0 to disable.
+     * @param rotateMillis   Rotate the trace file after this many milliseconds, 0 to disable.
+     * @param compress       Whether trace files are written gzip-compressed.
+     */
+    public TraceSettings(int bufferSize, OverflowPolicy overflowPolicy, long rotateBytes, long rotateMillis, boolean compress) {
+        int capacity = 1;
+        while (capacity < bufferSize) {
+            capacity <<= 1;
+        }
+        this.bufferSize = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.rotateBytes = rotateBytes;
+        this.rotateMillis = rotateMillis;
+        this.compress = compress;
+    }
+
+    /**
+     * Settings used when none are configured: 8192 events per worker, drop on overflow, no rotation or compression.
+     *
+     * @return The default settings.
+     */
+    public static TraceSettings defaults() {
+        return new TraceSettings(8192, OverflowPolicy.DROP, 0, 0, false);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long getRotateBytes() {
+        return rotateBytes;
+    }
+
+    public long getRotateMillis() {
+        return rotateMillis;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+}
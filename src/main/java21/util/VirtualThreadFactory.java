@@ -0,0 +1,16 @@
+package util;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual-thread factory for the simulated clients, only compiled by the java21 profile.
+ * ClientThreads loads it by name so the Java 8 build does not depend on it.
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+    private final ThreadFactory delegate = Thread.ofVirtual().name("client-", 0).factory();
+
+    @Override
+    public Thread newThread(Runnable task) {
+        return delegate.newThread(task);
+    }
+}